@@ -6,10 +6,8 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -69,6 +67,16 @@ public class Main {
 //                StandardOpenOption.TRUNCATE_EXISTING,
 //                StandardOpenOption.WRITE);
         
+        // SUGGESTED FRIENDS BY PERSONALIZED PAGERANK (uncomment below to use)
+        
+//        Map<Person, Double> scores = Graphs.localPersonalizedPageRank(
+//                new CompactGraph<>(graph), ROOT_PERSON, 0.85, 1e-6);
+//        List<Person> ranked = scores.keySet().stream()
+//                .filter(p -> !p.equals(ROOT_PERSON) && !graph.hasEdge(ROOT_PERSON, p))
+//                .sorted((p, q) -> Double.compare(scores.get(q), scores.get(p)))
+//                .limit(20)
+//                .collect(Collectors.toList());
+        
         // MUTUAL FRIENDS (uncomment below to use)
         
 //        List<Person> mf = Graphs.mutualFriends(graph, ROOT_PERSON, TEST_PERSON);
@@ -78,6 +86,60 @@ public class Main {
 //                StandardOpenOption.TRUNCATE_EXISTING,
 //                StandardOpenOption.WRITE);
         
+        // DEGREES OF SEPARATION (uncomment below to use; the oracle is saved next to the .friends files)
+        
+//        CompactGraph<Person> compact = new CompactGraph<>(graph);
+//        DistanceOracle<Person> oracle = new DistanceOracle<>(compact, 16);
+//        oracle.save(OUTPUT_DIR, Person::getUniqueKey);
+//        System.out.println("distance: " + oracle.distance(ROOT_PERSON, TEST_PERSON, 100000));
+        
+        // SUGGESTED FRIENDS FOR EVERY COMPLETE-INFO PERSON (uncomment below to use)
+        
+//        Set<Person> people = new HashSet<>();
+//        CompactGraph<Person> compactGraph = new CompactGraph<>(loadIntoGraph(OUTPUT_DIR, people));
+//        new SuggestionsJob<>(compactGraph, 20, Graphs.SuggestionScore.ADAMIC_ADAR, 1024)
+//                .run(people, Paths.get(DOWNLOADS_DIR, "all_suggested.txt").toString(),
+//                        Person::getUniqueKey);
+        
+        // COMMUNITIES (uncomment below to use)
+        
+//        Louvain<Person> louvain = Graphs.louvain(graph);
+//        for (int level = 0; level < louvain.numLevels(); level++) {
+//            System.out.println("level " + level + ": modularity " + louvain.modularity(level));
+//        }
+//        List<List<Person>> communities = louvain.communities();
+        
+        // CONNECTED COMPONENTS WHILE LOADING (uncomment below to use; reads the files in parallel)
+        
+//        UnionFind<Person> components = new UnionFind<>();
+//        try (Stream<Path> files = Files.list(Paths.get(OUTPUT_DIR))) {
+//            files.parallel().filter(f -> f.toString().endsWith(".friends")).forEach(f -> {
+//                try {
+//                    List<Person> l = FriendsFiles.loadFromFile(f.toString());
+//                    for (Person friend : l.subList(1, l.size())) {
+//                        components.union(l.get(0), friend);
+//                    }
+//                } catch (IOException e) {
+//                    System.err.println(e);
+//                }
+//            });
+//        }
+//        System.out.println("number of components: " + components.numSets());
+        
+        // ALL CLIQUES, USING THE COMPLETE-INFO NODES (uncomment below to use)
+        
+//        Set<Person> completeInfoNodes = new HashSet<>();
+//        Graph<Person> fullGraph = loadIntoGraph(OUTPUT_DIR, completeInfoNodes);
+//        List<List<Person>> allCliques = Graphs.allMaximalCliques(fullGraph, completeInfoNodes, 3);
+        
+        // RESUMABLE SEARCH FOR ALL CLIQUES (uncomment below to use; run again to resume)
+        
+//        CliqueJob<Person> job = new CliqueJob<>(new CompactGraph<>(graph), 3,
+//                Paths.get(OUTPUT_DIR, "cliques").toString(), Person::getUniqueKey);
+//        if (job.run(6 * 60 * 60)) {
+//            List<List<Person>> allCliques = job.results();
+//        }
+        
         // CLIQUES (uncomment below to use)
         
         List<List<Person>> cliques = Graphs.maximalCliquesContaining(graph, ROOT_PERSON, 3);
@@ -132,15 +194,26 @@ public class Main {
      * @return The resulting friends graph.
      */
     public static Graph<Person> loadIntoGraph(String dirpath) {
+        return loadIntoGraph(dirpath, new HashSet<>());
+    }
+    
+    /**
+     * Call this function with a directory to load all .friends files from that directory
+     * and put the data into a graph.
+     * @param dirpath The path to the directory containing the .friends files.
+     * @param completeInfoNodes The set to add the complete-info nodes to, i.e. the owners
+     * of the .friends files (whose friends are all known).
+     * @return The resulting friends graph.
+     */
+    public static Graph<Person> loadIntoGraph(String dirpath, Set<Person> completeInfoNodes) {
         List<List<Person>> adjLists = FriendsFiles.loadAllInDirectory(OUTPUT_DIR, false);
-        Map<Person, List<Person>> adjList = new HashMap<>();
+        Graph<Person> graph = new Graph<>();
         for (List<Person> l : adjLists) {
-            Person p = l.get(0);
-            l.remove(0);
-            adjList.put(p, l);
+            graph.addEdges(l.get(0), l.subList(1, l.size()));
+            completeInfoNodes.add(l.get(0));
         }
-        System.out.println("Number of complete-info nodes: " + adjList.size());
-        return new Graph<Person>(adjList);
+        System.out.println("Number of complete-info nodes: " + adjLists.size());
+        return graph;
     }
 
     /**
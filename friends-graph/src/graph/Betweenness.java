@@ -0,0 +1,122 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes betweenness centrality in a {@link CompactGraph} with the algorithm of Brandes
+ * (https://doi.org/10.1080/0022250X.2001.9990249): one breadth first search per source counts
+ * the shortest paths to every node, and the nodes are then visited in the reverse order of
+ * the search to add up the dependency of the source on each of them. The predecessors of a
+ * node w are its neighbors one level closer to the source, so they are found in the
+ * adjacency list of w instead of being stored.
+ * <p>
+ * The sources are split between one worker per thread. Each worker has its own primitive
+ * arrays for the search and its own array of partial sums, and only resets the entries that a
+ * search visited, so a search costs O(visited nodes + their edges).
+ * @author roger
+ *
+ */
+class Betweenness extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final CompactGraph<?> g;
+    private final int[] dist;
+    private final double[] sigma;
+    private final double[] delta;
+    private final int[] order;
+    final double[] centrality;
+
+    private int[] sources;
+    private int from;
+    private int to;
+
+    private Betweenness(CompactGraph<?> g) {
+        int n = g.numNodes();
+        this.g = g;
+        this.dist = new int[n];
+        this.sigma = new double[n];
+        this.delta = new double[n];
+        this.order = new int[n];
+        this.centrality = new double[n];
+        Arrays.fill(dist, -1);
+    }
+
+    /**
+     * Returns the sum, over the given sources s, of the dependency of s on every node: the
+     * sum over all targets t of the fraction of shortest s-t paths that pass through the node.
+     * The searches run in parallel on the common {@link ForkJoinPool}.
+     * @param g The graph.
+     * @param sources The ids of the sources.
+     * @return The total dependency on each node, indexed by node id.
+     */
+    static double[] dependencies(CompactGraph<?> g, int[] sources) {
+        int numWorkers = Math.max(1, Math.min(sources.length,
+                ForkJoinPool.getCommonPoolParallelism()));
+        int chunk = (sources.length + numWorkers - 1) / numWorkers;
+        List<Betweenness> workers = new ArrayList<>();
+        for (int w = 0; w < numWorkers; w++) {
+            Betweenness worker = new Betweenness(g);
+            worker.sources = sources;
+            worker.from = Math.min(sources.length, w * chunk);
+            worker.to = Math.min(sources.length, (w + 1) * chunk);
+            workers.add(worker);
+        }
+        ForkJoinTask.invokeAll(workers);
+
+        double[] total = new double[g.numNodes()];
+        for (Betweenness worker : workers) {
+            for (int v = 0; v < total.length; v++) {
+                total[v] += worker.centrality[v];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    protected void compute() {
+        for (int i = from; i < to; i++) {
+            search(sources[i]);
+        }
+    }
+
+    private void search(int s) {
+        int head = 0;
+        int tail = 0;
+        order[tail++] = s;
+        dist[s] = 0;
+        sigma[s] = 1;
+        while (head < tail) {
+            int v = order[head++];
+            for (int i = g.offsets[v]; i < g.offsets[v + 1]; i++) {
+                int w = g.targets[i];
+                if (dist[w] < 0) {
+                    dist[w] = dist[v] + 1;
+                    order[tail++] = w;
+                }
+                if (dist[w] == dist[v] + 1) { sigma[w] += sigma[v]; }
+            }
+        }
+
+        // visit the nodes farthest first, pushing each dependency back to the predecessors
+        for (int j = tail - 1; j > 0; j--) {
+            int w = order[j];
+            double coefficient = (1 + delta[w]) / sigma[w];
+            for (int i = g.offsets[w]; i < g.offsets[w + 1]; i++) {
+                int v = g.targets[i];
+                if (dist[v] == dist[w] - 1) { delta[v] += sigma[v] * coefficient; }
+            }
+            centrality[w] += delta[w];
+        }
+
+        for (int j = 0; j < tail; j++) {
+            int v = order[j];
+            dist[v] = -1;
+            sigma[v] = 0;
+            delta[v] = 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package graph;
+import java.util.Arrays;
+
+/**
+ * Finds the articulation points and the bridges of a {@link CompactGraph} with Tarjan's
+ * low-link depth first search (https://doi.org/10.1137/0201010). An articulation point is a
+ * node whose removal disconnects its component, and a bridge is an edge whose removal does.
+ * <p>
+ * The search is iterative, with an explicit stack of nodes and, for every node on the stack,
+ * the slot of the next edge to look at, so it can go as deep as the graph is long without a
+ * StackOverflowError. It takes O(n + m) time.
+ * @author roger
+ *
+ */
+class Biconnectivity {
+
+    // articulation[u] is true if u is an articulation point
+    final boolean[] articulation;
+
+    // bridge[i] is true if the edge in slot i of g.targets is a bridge (in both directions)
+    final boolean[] bridge;
+
+    Biconnectivity(CompactGraph<?> g) {
+        int n = g.numNodes();
+        this.articulation = new boolean[n];
+        this.bridge = new boolean[g.targets.length];
+
+        // discovery[u] is the order in which u was found, starting at 1, or 0 if not found yet
+        int[] discovery = new int[n];
+        int[] low = new int[n];
+        int[] parent = new int[n];
+        int[] next = new int[n];
+        int[] stack = new int[n];
+        int time = 0;
+        for (int root = 0; root < n; root++) {
+            if (discovery[root] != 0) { continue; }
+            int size = 0;
+            stack[size++] = root;
+            parent[root] = -1;
+            discovery[root] = low[root] = ++time;
+            next[root] = g.offsets[root];
+            int rootChildren = 0;
+            while (size > 0) {
+                int u = stack[size - 1];
+                if (next[u] < g.offsets[u + 1]) {
+                    int v = g.targets[next[u]++];
+                    if (discovery[v] == 0) {
+                        parent[v] = u;
+                        discovery[v] = low[v] = ++time;
+                        next[v] = g.offsets[v];
+                        stack[size++] = v;
+                        if (u == root) { rootChildren++; }
+                    } else if (v != parent[u]) {
+                        low[u] = Math.min(low[u], discovery[v]);
+                    }
+                    continue;
+                }
+
+                // every edge of u has been looked at, so return to its parent p
+                size--;
+                int p = parent[u];
+                if (p < 0) { continue; }
+                low[p] = Math.min(low[p], low[u]);
+                if (p != root && low[u] >= discovery[p]) { articulation[p] = true; }
+                if (low[u] > discovery[p]) {
+                    // the edge p-u is the last one that the search took out of p
+                    int slot = next[p] - 1;
+                    int reverse = Arrays.binarySearch(g.targets, g.offsets[u],
+                            g.offsets[u + 1], p);
+                    bridge[slot] = true;
+                    bridge[reverse] = true;
+                }
+            }
+            if (rootChildren > 1) { articulation[root] = true; }
+        }
+    }
+}
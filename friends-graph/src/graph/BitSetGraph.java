@@ -0,0 +1,486 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * A small undirected graph on the nodes {@code 0, ..., n - 1}, stored as an adjacency bit
+ * matrix: bit j of {@code rows[i]} is set if and only if {i, j} is an edge. Sets of nodes are
+ * {@code long[]} bitsets with the same length as a row, so intersecting a set with a
+ * neighborhood is a word-wise AND. This is meant for small, dense graphs such as the subgraph
+ * induced on the neighbors of a single node (its "ego network").
+ * @author roger
+ *
+ */
+class BitSetGraph {
+
+    // in parallel mode, a branch whose candidate set P has at least this many nodes is split
+    // into one subtask per candidate
+    private static final int PARALLEL_THRESHOLD = 32;
+
+    final int n;
+    final int words;
+    final long[][] rows;
+
+    // the number of recursive calls made by searches on this graph; a maximal clique search
+    // counts its calls in its own SearchCounter (one per task in parallel mode), which is only
+    // added here by the thread that started the search, after it ends, and cliqueTree, which
+    // is never parallel, counts here directly
+    long recursiveCalls;
+
+    /**
+     * Creates a graph with n nodes and no edges.
+     * @param n The number of nodes.
+     */
+    BitSetGraph(int n) {
+        this.n = n;
+        this.words = (n + 63) >>> 6;
+        this.rows = new long[n][words];
+    }
+
+    /**
+     * Creates the subgraph of {@code g} induced on the nodes in {@code members}. The node with
+     * local index i is {@code members[i]}.
+     * @param g The graph.
+     * @param members The ids of the nodes of the subgraph, sorted in ascending order.
+     * @return The subgraph induced on {@code members}.
+     */
+    static BitSetGraph induced(CompactGraph<?> g, int[] members) {
+        BitSetGraph h = new BitSetGraph(members.length);
+        for (int i = 0; i < h.n; i++) {
+            int a = members[i];
+            long[] row = h.rows[i];
+
+            // if a has many more neighbors than there are members (e.g. a hub next to a node
+            // with only a few friends), look up each member in N(a) instead of walking N(a)
+            if (g.degree(a) > 4 * h.n) {
+                for (int j = 0; j < h.n; j++) {
+                    if (Arrays.binarySearch(g.targets, g.offsets[a], g.offsets[a + 1],
+                            members[j]) >= 0) {
+                        row[j >>> 6] |= 1L << j;
+                    }
+                }
+                continue;
+            }
+
+            // both lists are sorted, so a merge finds the local index of each neighbor
+            int p = g.offsets[a];
+            int pEnd = g.offsets[a + 1];
+            int j = 0;
+            while (p < pEnd && j < h.n) {
+                if (g.targets[p] < members[j]) {
+                    p++;
+                } else if (g.targets[p] > members[j]) {
+                    j++;
+                } else {
+                    row[j >>> 6] |= 1L << j;
+                    p++;
+                    j++;
+                }
+            }
+        }
+        return h;
+    }
+
+    void addEdge(int a, int b) {
+        if (a == b) { return; }
+        rows[a][b >>> 6] |= 1L << b;
+        rows[b][a >>> 6] |= 1L << a;
+    }
+
+    boolean hasEdge(int a, int b) {
+        return (rows[a][b >>> 6] & (1L << b)) != 0;
+    }
+
+    /**
+     * Returns a bitset containing all n nodes.
+     * @return A bitset containing all n nodes.
+     */
+    long[] allNodes() {
+        long[] set = new long[words];
+        Arrays.fill(set, -1L);
+        if ((n & 63) != 0) {
+            set[words - 1] = (1L << n) - 1;
+        }
+        return set;
+    }
+
+    /**
+     * Returns the nodes of the k-core of this graph, i.e. the largest subgraph in which every
+     * node has at least k neighbors, found by repeatedly removing nodes of degree less than k.
+     * @param k The minimum degree.
+     * @return A bitset of the nodes of the k-core.
+     */
+    long[] kCoreNodes(int k) {
+        long[] alive = allNodes();
+        int[] degrees = new int[n];
+        int[] stack = new int[n];
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            degrees[i] = cardinality(rows[i]);
+            if (degrees[i] < k) {
+                alive[i >>> 6] &= ~(1L << i);
+                stack[top++] = i;
+            }
+        }
+        while (top > 0) {
+            long[] row = rows[stack[--top]];
+            for (int w = 0; w < words; w++) {
+                long neighbors = row[w] & alive[w];
+                while (neighbors != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(neighbors);
+                    neighbors &= neighbors - 1;
+                    if (--degrees[j] < k) {
+                        alive[w] &= ~(1L << j);
+                        stack[top++] = j;
+                    }
+                }
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Finds the maximal cliques of this graph that contain none of the nodes in X, starting
+     * from the candidate set P, and passes each one to {@code action} as soon as it is found.
+     * Every clique is written to {@code R[rSize..]} after the first {@code rSize} entries of R,
+     * and {@code action} receives a copy of {@code R} trimmed to the clique's length. Branches
+     * that cannot reach minSize nodes are not searched. P and X are modified by this method.
+     * @param R An array of length at least {@code rSize + n}, whose first rSize entries are
+     * copied into every clique (they are not interpreted as nodes of this graph).
+     * @param rSize The number of entries of R to keep.
+     * @param P The candidate nodes (all nodes, to find every maximal clique of this graph).
+     * @param X The excluded nodes.
+     * @param minSize The minimum size of a clique that is reported, counting the first rSize
+     * entries of R.
+     * @param action Receives each clique and returns false to stop the search.
+     * @return false if {@code action} stopped the search, true otherwise.
+     */
+    boolean maximalCliques(int[] R, int rSize, long[] P, long[] X, int minSize,
+            Predicate<int[]> action) {
+        return maximalCliques(R, rSize, P, X, minSize, Long.MAX_VALUE, action);
+    }
+
+    /**
+     * Same as {@link #maximalCliques(int[], int, long[], long[], int, Predicate)}, but also
+     * stops the search once {@code System.currentTimeMillis()} reaches the deadline, which is
+     * checked every {@link SearchCounter#POLL_INTERVAL} recursive calls, so that a search
+     * that finds no cliques still stops on time.
+     * @param deadline The time in milliseconds at which to stop.
+     * @return false if {@code action} or the deadline stopped the search, true otherwise.
+     */
+    boolean maximalCliques(int[] R, int rSize, long[] P, long[] X, int minSize, long deadline,
+            Predicate<int[]> action) {
+        SearchCounter counter = new SearchCounter(deadline);
+        boolean finished = BronKerboschPivoting(R, rSize, P, X, minSize, action, counter);
+        recursiveCalls += counter.calls;
+        return finished;
+    }
+
+    /**
+     * Finds the maximal cliques of this graph that contain none of the nodes in X, starting
+     * from the candidate set P. Every clique found is written to {@code R[rSize..]} after the
+     * first {@code rSize} entries of R, and a copy of {@code R} (trimmed to the clique's length)
+     * is added to the result. P and X are modified by this method.
+     * @param R An array of length at least {@code rSize + n}, whose first rSize entries are
+     * copied into every clique (they are not interpreted as nodes of this graph).
+     * @param rSize The number of entries of R to keep.
+     * @param P The candidate nodes (all nodes, to find every maximal clique of this graph).
+     * @param X The excluded nodes.
+     * @param minSize The minimum size of a clique that is returned, counting the first rSize
+     * entries of R.
+     * @param parallel If true, large branches of the search are split into ForkJoin tasks.
+     * The result is the same as in sequential mode, in the same order.
+     * @return The maximal cliques found.
+     */
+    List<int[]> maximalCliques(int[] R, int rSize, long[] P, long[] X, int minSize,
+            boolean parallel) {
+        if (parallel) {
+            BranchTask task = new BranchTask(R, rSize, P, X, minSize);
+            List<int[]> ans = task.invoke();
+            recursiveCalls += task.counter.calls;
+            return ans;
+        }
+        List<int[]> ans = new ArrayList<>();
+        maximalCliques(R, rSize, P, X, minSize, ans::add);
+        return ans;
+    }
+
+    /**
+     * The bitset version of the BronKerbosch2 algorithm. The pivot is the node of P union X
+     * with the most neighbors in P (Tomita et al.), which minimizes the number of branches.
+     * P and X are modified by this method.
+     * @return false if {@code action} or the deadline of the counter stopped the search, true
+     * otherwise.
+     */
+    private boolean BronKerboschPivoting(int[] R, int rSize, long[] P, long[] X, int minSize,
+            Predicate<int[]> action, SearchCounter counter) {
+        if (!counter.tick()) { return false; }
+        if (rSize + cardinality(P) < minSize) { return true; }
+        if (isEmpty(P)) {
+            return !isEmpty(X) || action.test(Arrays.copyOf(R, rSize));
+        }
+        long[] pivotNeighbors = rows[choosePivot(P, X)];
+        for (int w = 0; w < words; w++) {
+            long candidates = P[w] & ~pivotNeighbors[w];
+            while (candidates != 0) {
+                int v = (w << 6) + Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+
+                long[] vNeighbors = rows[v];
+                long[] PPrime = new long[words];
+                long[] XPrime = new long[words];
+                for (int i = 0; i < words; i++) {
+                    PPrime[i] = P[i] & vNeighbors[i];
+                    XPrime[i] = X[i] & vNeighbors[i];
+                }
+                R[rSize] = v;
+                if (!BronKerboschPivoting(R, rSize + 1, PPrime, XPrime, minSize, action,
+                        counter)) {
+                    return false;
+                }
+                P[w] &= ~(1L << v);
+                X[w] |= 1L << v;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Receives the leaves of a succinct clique tree. See {@link BitSetGraph#cliqueTree}.
+     */
+    interface CliqueTreeLeaf {
+        /**
+         * Called for each leaf, which stands for the cliques made of all of the held nodes
+         * and any subset of the pivot nodes.
+         * @param held The held nodes are {@code held[0..hSize)}.
+         * @param pivots The pivot nodes are {@code pivots[0..pSize)}.
+         */
+        void visit(int[] held, int hSize, int[] pivots, int pSize);
+    }
+
+    /**
+     * Builds the succinct clique tree of the Pivoter algorithm (Jain and Seshadhri) over the
+     * candidates P and passes each of its leaves to {@code leaf}. The branching is the same
+     * as in BronKerboschPivoting: the pivot u maximizes |P intersect N(u)| and there is one
+     * branch for each node of P that is not a neighbor of u. The pivot's own branch adds u to
+     * the pivot nodes, since every clique in P intersect N(u) can be counted with or without
+     * u, and every other branch adds its node to the held nodes. Every clique in P (together
+     * with the nodes already held) is then represented by exactly one leaf, so a leaf with h
+     * held and p pivot nodes accounts for C(p, k - h) cliques of size k.
+     * P is modified by this method.
+     * @param held The nodes that are in every clique of this branch are {@code held[0..hSize)}.
+     * The array must have room for hSize + |P| entries.
+     * @param pivots The nodes that may or may not be in a clique of this branch are
+     * {@code pivots[0..pSize)}. The array must have room for pSize + |P| entries.
+     * @param P The candidates.
+     * @param leaf Receives each leaf of the tree.
+     */
+    void cliqueTree(int[] held, int hSize, int[] pivots, int pSize, long[] P,
+            CliqueTreeLeaf leaf) {
+        recursiveCalls++;
+        if (isEmpty(P)) {
+            leaf.visit(held, hSize, pivots, pSize);
+            return;
+        }
+        // there is no excluded set, since each clique is only counted once
+        int pivot = choosePivot(P, P);
+        long[] pivotNeighbors = rows[pivot];
+        for (int w = 0; w < words; w++) {
+            long candidates = P[w] & ~pivotNeighbors[w];
+            while (candidates != 0) {
+                int v = (w << 6) + Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+
+                long[] vNeighbors = rows[v];
+                long[] PPrime = new long[words];
+                for (int i = 0; i < words; i++) {
+                    PPrime[i] = P[i] & vNeighbors[i];
+                }
+                if (v == pivot) {
+                    pivots[pSize] = v;
+                    cliqueTree(held, hSize, pivots, pSize + 1, PPrime, leaf);
+                } else {
+                    held[hSize] = v;
+                    cliqueTree(held, hSize + 1, pivots, pSize, PPrime, leaf);
+                }
+                P[w] &= ~(1L << v);
+            }
+        }
+    }
+
+    /**
+     * Counts the recursive calls of one search (or of one task of a parallel search), and
+     * tells it to stop once a deadline has passed. The clock is only read every
+     * POLL_INTERVAL calls, so counting costs almost nothing.
+     */
+    static class SearchCounter {
+        static final int POLL_INTERVAL = 1024;
+
+        private final long deadline;
+        long calls;
+
+        SearchCounter(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Counts one call, and returns false if the search should stop.
+         */
+        boolean tick() {
+            calls++;
+            return calls % POLL_INTERVAL != 0 || System.currentTimeMillis() < deadline;
+        }
+    }
+
+    /**
+     * A branch of the Bron-Kerbosch search. If P is large, the (R, P', X') sub-problem of
+     * every candidate is computed up front and solved in its own subtask, and the results are
+     * concatenated in candidate order, which is the order the sequential search finds them in.
+     * Small branches are solved sequentially into a buffer owned by the task.
+     */
+    private class BranchTask extends RecursiveTask<List<int[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] R;
+        private final int rSize;
+        private final long[] P;
+        private final long[] X;
+        private final int minSize;
+
+        // the calls made by this task and its subtasks
+        final SearchCounter counter = new SearchCounter(Long.MAX_VALUE);
+
+        BranchTask(int[] R, int rSize, long[] P, long[] X, int minSize) {
+            this.R = R;
+            this.rSize = rSize;
+            this.P = P;
+            this.X = X;
+            this.minSize = minSize;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            int pSize = cardinality(P);
+            if (pSize < PARALLEL_THRESHOLD || rSize + pSize < minSize) {
+                List<int[]> ans = new ArrayList<>();
+                BronKerboschPivoting(R, rSize, P, X, minSize, ans::add, counter);
+                return ans;
+            }
+            counter.calls++;
+            long[] pivotNeighbors = rows[choosePivot(P, X)];
+            List<BranchTask> subtasks = new ArrayList<>();
+            for (int w = 0; w < words; w++) {
+                long candidates = P[w] & ~pivotNeighbors[w];
+                while (candidates != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+
+                    long[] vNeighbors = rows[v];
+                    long[] PPrime = new long[words];
+                    long[] XPrime = new long[words];
+                    for (int i = 0; i < words; i++) {
+                        PPrime[i] = P[i] & vNeighbors[i];
+                        XPrime[i] = X[i] & vNeighbors[i];
+                    }
+                    int[] RPrime = Arrays.copyOf(R, R.length);
+                    RPrime[rSize] = v;
+                    subtasks.add(new BranchTask(RPrime, rSize + 1, PPrime, XPrime, minSize));
+                    P[w] &= ~(1L << v);
+                    X[w] |= 1L << v;
+                }
+            }
+            invokeAll(subtasks);
+            List<int[]> ans = new ArrayList<>();
+            for (BranchTask t : subtasks) {
+                ans.addAll(t.join());
+                counter.calls += t.counter.calls;
+            }
+            return ans;
+        }
+    }
+
+    /**
+     * Greedily colors the subgraph induced on P so that no two neighbors have the same color,
+     * as in Tomita's MCQ algorithm: each color class is built by repeatedly taking the first
+     * remaining node that has no neighbor in the class. A clique has at most one node of each
+     * color, so the number of colors is an upper bound on the size of any clique in P.
+     * @param P A set of nodes. It is not modified.
+     * @param order If not null, an array of length at least |P| that is filled with the nodes
+     * of P in nondecreasing order of color.
+     * @param colors If not null, an array of length at least |P| that is filled with the color
+     * (starting from 1) of each node in {@code order}.
+     * @return The number of colors used.
+     */
+    int colorSort(long[] P, int[] order, int[] colors) {
+        long[] uncolored = P.clone();
+        long[] Q = new long[words];
+        int numColors = 0;
+        int index = 0;
+        while (!isEmpty(uncolored)) {
+            numColors++;
+            System.arraycopy(uncolored, 0, Q, 0, words);
+            for (int w = 0; w < words; w++) {
+                while (Q[w] != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(Q[w]);
+                    Q[w] &= Q[w] - 1;
+                    uncolored[w] &= ~(1L << v);
+                    long[] vNeighbors = rows[v];
+                    for (int i = w; i < words; i++) {
+                        Q[i] &= ~vNeighbors[i];
+                    }
+                    if (order != null) { order[index] = v; }
+                    if (colors != null) { colors[index] = numColors; }
+                    index++;
+                }
+            }
+        }
+        return numColors;
+    }
+
+    /**
+     * Returns the node u in P union X that maximizes |P intersect N(u)|. P must not be empty.
+     */
+    int choosePivot(long[] P, long[] X) {
+        int pivot = -1;
+        int best = -1;
+        for (int w = 0; w < words; w++) {
+            long set = P[w] | X[w];
+            while (set != 0) {
+                int u = (w << 6) + Long.numberOfTrailingZeros(set);
+                set &= set - 1;
+                int count = intersectionSize(P, rows[u]);
+                if (count > best) {
+                    best = count;
+                    pivot = u;
+                }
+            }
+        }
+        return pivot;
+    }
+
+    static boolean isEmpty(long[] set) {
+        for (long word : set) {
+            if (word != 0) { return false; }
+        }
+        return true;
+    }
+
+    static int cardinality(long[] set) {
+        int count = 0;
+        for (long word : set) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    static int intersectionSize(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+}
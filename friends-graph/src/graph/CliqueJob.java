@@ -0,0 +1,298 @@
+package graph;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A search for all maximal cliques of size at least minSize in a {@link CompactGraph} that can
+ * be stopped and resumed, for graphs on which {@link Graphs#allMaximalCliques} runs for hours.
+ * The job walks the outer loop of the BronKerbosch3 algorithm (see
+ * {@link Graphs#forEachMaximalClique}) one node at a time, appends the cliques of every finished
+ * node to a results file, and periodically writes a checkpoint with its position in the outer
+ * loop. Creating a job for a directory that already has a checkpoint resumes from it.
+ * <p>
+ * The job writes three files to its directory:
+ * <ul>
+ * <li>{@code cliques.ordering}: the key of every node, in the order of the outer loop. This is
+ * written once, so a resumed job uses the same ordering even if the graph was loaded in a
+ * different order.</li>
+ * <li>{@code cliques.results}: one clique per line, as tab separated node keys.</li>
+ * <li>{@code cliques.checkpoint}: the position in the outer loop, the counters, and the length
+ * of the results file at the time of the checkpoint. Results written after the last
+ * checkpoint are discarded on resume.</li>
+ * </ul>
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class CliqueJob<V> {
+
+    private static final String ORDERING_FILE = "cliques.ordering";
+    private static final String RESULTS_FILE = "cliques.results";
+    private static final String CHECKPOINT_FILE = "cliques.checkpoint";
+    private static final String CHECKPOINT_HEADER = "clique job checkpoint v1";
+
+    private final CompactGraph<V> g;
+    private final int minSize;
+    private final Function<V, String> keyFunction;
+    private final Path orderingPath;
+    private final Path resultsPath;
+    private final Path checkpointPath;
+
+    private final int[] ordering;
+    private final int[] rank;
+
+    private long checkpointIntervalMillis = 60 * 1000;
+
+    // the state that is saved in each checkpoint
+    private int position;
+    private long cliquesFound;
+    private long recursiveCalls;
+    private long resultsLength;
+
+    /**
+     * Creates a job that finds all maximal cliques of size at least minSize in g, or resumes
+     * the job whose files are in {@code dirpath}.
+     * @param g The graph.
+     * @param minSize The minimum size of a maximal clique that is saved. This will be set to 3
+     * if the given value is less than 3.
+     * @param dirpath The path to the directory to save the job's files to.
+     * @param keyFunction A function that returns a String that uniquely identifies a node and
+     * contains no tabs or line breaks, e.g. {@code Person::getUniqueKey}.
+     * @throws IllegalStateException if the checkpoint in {@code dirpath} was made for a
+     * different minSize or for a graph that does not contain all of its nodes.
+     * @throws IOException
+     */
+    public CliqueJob(CompactGraph<V> g, int minSize, String dirpath,
+            Function<V, String> keyFunction) throws IOException {
+        this.g = g;
+        this.minSize = Math.max(minSize, 3);
+        this.keyFunction = keyFunction;
+        Path dir = Paths.get(dirpath);
+        Files.createDirectories(dir);
+        this.orderingPath = dir.resolve(ORDERING_FILE);
+        this.resultsPath = dir.resolve(RESULTS_FILE);
+        this.checkpointPath = dir.resolve(CHECKPOINT_FILE);
+
+        int n = g.numNodes();
+        this.ordering = new int[n];
+        int[] coreNumbers = Graphs.coreDecomposition(g, ordering);
+        if (Files.exists(checkpointPath)) {
+            resume();
+        } else {
+            start();
+        }
+
+        // prune the nodes that can not be in a clique of size minSize, as in
+        // Graphs.forEachMaximalClique
+        this.rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            int v = ordering[i];
+            rank[v] = coreNumbers[v] >= this.minSize - 1 ? i : -1;
+        }
+    }
+
+    /**
+     * Sets how often a checkpoint is written while the job runs. The default is once a minute.
+     * @param seconds The minimum number of seconds between two checkpoints.
+     */
+    public void setCheckpointInterval(long seconds) {
+        checkpointIntervalMillis = seconds * 1000;
+    }
+
+    /**
+     * Runs the job until it is finished or until {@code budgetSeconds} have passed, whichever
+     * comes first, and then writes a checkpoint. If the budget runs out while a node of the
+     * outer loop is being searched, the cliques found for that node are discarded and the node
+     * is searched again when the job is resumed.
+     * @param budgetSeconds The maximum number of seconds to run for.
+     * @return true if the job is finished, false otherwise.
+     * @throws IOException
+     */
+    public boolean run(long budgetSeconds) throws IOException {
+        long deadline = System.currentTimeMillis() + budgetSeconds * 1000;
+        long nextCheckpoint = System.currentTimeMillis() + checkpointIntervalMillis;
+        try (BufferedWriter writer = Files.newBufferedWriter(resultsPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (position < ordering.length) {
+                CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, ordering[position], rank);
+                if (subproblem != null) {
+                    List<int[]> cliques = new ArrayList<>();
+                    boolean finished = subproblem.forEach(minSize, deadline, clique -> {
+                        cliques.add(clique);
+                        return true;
+                    });
+                    if (!finished) { break; }
+                    for (int[] clique : cliques) {
+                        writer.write(toLine(clique));
+                        writer.newLine();
+                    }
+                    cliquesFound += cliques.size();
+                    recursiveCalls += subproblem.subgraph.recursiveCalls;
+                }
+                position++;
+
+                if (System.currentTimeMillis() >= nextCheckpoint) {
+                    writer.flush();
+                    writeCheckpoint();
+                    nextCheckpoint = System.currentTimeMillis() + checkpointIntervalMillis;
+                }
+                if (System.currentTimeMillis() >= deadline) { break; }
+            }
+            writer.flush();
+            writeCheckpoint();
+        }
+        return isFinished();
+    }
+
+    public boolean isFinished() {
+        return position == ordering.length;
+    }
+
+    /**
+     * Returns the number of nodes of the outer loop that have been searched.
+     * @return The number of nodes of the outer loop that have been searched.
+     */
+    public int nodesDone() {
+        return position;
+    }
+
+    public int numNodes() {
+        return ordering.length;
+    }
+
+    public long cliquesFound() {
+        return cliquesFound;
+    }
+
+    public long recursiveCalls() {
+        return recursiveCalls;
+    }
+
+    /**
+     * Loads the cliques saved so far and returns them in descending order of their size.
+     * @return The maximal cliques found so far, each represented as a list of nodes.
+     * @throws IOException
+     */
+    public List<List<V>> results() throws IOException {
+        Map<String, V> nodesByKey = nodesByKey();
+        List<List<V>> ans = new ArrayList<>();
+        for (String line : Files.readAllLines(resultsPath, StandardCharsets.UTF_8)) {
+            List<V> clique = new ArrayList<>();
+            for (String key : line.split("\t")) {
+                clique.add(nodesByKey.get(key));
+            }
+            ans.add(clique);
+        }
+        ans.sort((l1, l2) -> l2.size() - l1.size());
+        return ans;
+    }
+
+    /**
+     * Saves the degeneracy ordering of the graph and creates an empty results file.
+     */
+    private void start() throws IOException {
+        List<String> keys = new ArrayList<>(ordering.length);
+        for (int v : ordering) {
+            String key = keyFunction.apply(g.node(v));
+            if (key.contains("\t") || key.contains("\n") || key.contains("\r")) {
+                throw new IllegalArgumentException("Node key contains a tab or line break: " + key);
+            }
+            keys.add(key);
+        }
+        Files.write(orderingPath, keys, StandardCharsets.UTF_8);
+        Files.write(resultsPath, new byte[0]);
+        writeCheckpoint();
+    }
+
+    /**
+     * Restores the ordering and counters from the files of a previous run, and discards any
+     * results written after its last checkpoint.
+     */
+    private void resume() throws IOException {
+        List<String> lines = Files.readAllLines(checkpointPath, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(CHECKPOINT_HEADER)) {
+            throw new IllegalStateException("Not a clique job checkpoint: " + checkpointPath);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            int space = line.indexOf(' ');
+            values.put(line.substring(0, space), line.substring(space + 1));
+        }
+        if (Integer.parseInt(values.get("minSize")) != minSize) {
+            throw new IllegalStateException("Checkpoint was made with minSize "
+                    + values.get("minSize") + ", not " + minSize);
+        }
+        position = Integer.parseInt(values.get("position"));
+        cliquesFound = Long.parseLong(values.get("cliquesFound"));
+        recursiveCalls = Long.parseLong(values.get("recursiveCalls"));
+        resultsLength = Long.parseLong(values.get("resultsLength"));
+
+        List<String> keys = Files.readAllLines(orderingPath, StandardCharsets.UTF_8);
+        if (keys.size() != ordering.length) {
+            throw new IllegalStateException("Checkpoint was made for a graph with " + keys.size()
+                    + " nodes, not " + ordering.length);
+        }
+        Map<String, V> nodesByKey = nodesByKey();
+        for (int i = 0; i < keys.size(); i++) {
+            V v = nodesByKey.get(keys.get(i));
+            if (v == null) {
+                throw new IllegalStateException("Checkpoint node is not in the graph: " + keys.get(i));
+            }
+            ordering[i] = g.id(v);
+        }
+
+        try (FileChannel channel = FileChannel.open(resultsPath, StandardOpenOption.WRITE)) {
+            channel.truncate(resultsLength);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and then moves it over the previous one, so
+     * that a crash while writing never leaves a partial checkpoint behind.
+     */
+    private void writeCheckpoint() throws IOException {
+        resultsLength = Files.size(resultsPath);
+        List<String> lines = new ArrayList<>();
+        lines.add(CHECKPOINT_HEADER);
+        lines.add("minSize " + minSize);
+        lines.add("position " + position);
+        lines.add("cliquesFound " + cliquesFound);
+        lines.add("recursiveCalls " + recursiveCalls);
+        lines.add("resultsLength " + resultsLength);
+        Path tmp = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Clique job checkpoint: " + position + "/" + ordering.length
+                + " nodes, " + cliquesFound + " cliques, " + recursiveCalls + " recursive calls");
+    }
+
+    private Map<String, V> nodesByKey() {
+        Map<String, V> nodesByKey = new HashMap<>();
+        for (V v : g.nodes()) {
+            nodesByKey.put(keyFunction.apply(v), v);
+        }
+        return nodesByKey;
+    }
+
+    private String toLine(int[] clique) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < clique.length; i++) {
+            if (i > 0) { sb.append('\t'); }
+            sb.append(keyFunction.apply(g.node(clique[i])));
+        }
+        return sb.toString();
+    }
+}
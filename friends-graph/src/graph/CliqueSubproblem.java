@@ -0,0 +1,153 @@
+package graph;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * One independent sub-problem of a clique search on a {@link CompactGraph}: find the maximal
+ * cliques that contain the node v and whose other nodes are all in {@code members}, a subset of
+ * the neighbors of v. The search runs on the subgraph induced on {@code members}, with the
+ * candidate set P and excluded set X of the Bron-Kerbosch algorithm given as bitsets over that
+ * subgraph. Every clique is reported as an array of node ids of the {@link CompactGraph} with v
+ * at index 0. A sub-problem can only be searched once, since the search modifies P and X.
+ * @author roger
+ *
+ */
+class CliqueSubproblem {
+
+    final int v;
+    final int[] members;
+    final BitSetGraph subgraph;
+    final long[] P;
+    final long[] X;
+
+    private CliqueSubproblem(int v, int[] members, BitSetGraph subgraph, long[] P, long[] X) {
+        this.v = v;
+        this.members = members;
+        this.subgraph = subgraph;
+        this.P = P;
+        this.X = X;
+    }
+
+    /**
+     * Creates the sub-problem of the outer loop of the BronKerbosch3 algorithm for node v:
+     * the maximal cliques containing v whose other nodes all come after v in the vertex
+     * ordering.
+     * @param g The graph.
+     * @param v The id of a node in the graph.
+     * @param rank The position of each node in the vertex ordering, or -1 for nodes that are
+     * pruned from the search.
+     * @return The sub-problem, or null if it has no solutions (v is pruned, or every remaining
+     * neighbor of v comes before v in the ordering).
+     */
+    static CliqueSubproblem inOrdering(CompactGraph<?> g, int v, int[] rank) {
+        if (rank[v] < 0) { return null; }
+        int[] members = new int[g.degree(v)];
+        int size = 0;
+        boolean hasLaterNeighbor = false;
+        for (int i = g.offsets[v]; i < g.offsets[v + 1]; i++) {
+            int w = g.targets[i];
+            if (rank[w] < 0) { continue; }
+            members[size++] = w;
+            hasLaterNeighbor |= rank[w] > rank[v];
+        }
+        if (!hasLaterNeighbor && size > 0) { return null; }
+
+        members = Arrays.copyOf(members, size);
+        BitSetGraph subgraph = BitSetGraph.induced(g, members);
+        long[] P = new long[subgraph.words];
+        long[] X = new long[subgraph.words];
+        for (int i = 0; i < size; i++) {
+            if (rank[members[i]] > rank[v]) {
+                P[i >>> 6] |= 1L << i;
+            } else {
+                X[i >>> 6] |= 1L << i;
+            }
+        }
+        return new CliqueSubproblem(v, members, subgraph, P, X);
+    }
+
+    /**
+     * Creates the sub-problem of finding every maximal clique of size at least minSize that
+     * contains v. Only the (minSize - 2)-core of the subgraph induced on the neighbors of v
+     * can contribute to such a clique, so the rest of the subgraph is left out of P.
+     * @param g The graph.
+     * @param v The id of a node in the graph.
+     * @param minSize The minimum size of the cliques that are searched for.
+     * @return The sub-problem.
+     */
+    static CliqueSubproblem containing(CompactGraph<?> g, int v, int minSize) {
+        int[] members = g.neighbors(v);
+        BitSetGraph subgraph = BitSetGraph.induced(g, members);
+        return new CliqueSubproblem(v, members, subgraph, subgraph.kCoreNodes(minSize - 2),
+                new long[subgraph.words]);
+    }
+
+    /**
+     * Passes every maximal clique of size at least minSize in this sub-problem to
+     * {@code action}, as soon as it is found.
+     * @param minSize The minimum size of a clique that is reported.
+     * @param action Receives each clique and returns false to stop the search.
+     * @return false if {@code action} stopped the search, true otherwise.
+     */
+    boolean forEach(int minSize, Predicate<int[]> action) {
+        return forEach(minSize, Long.MAX_VALUE, action);
+    }
+
+    /**
+     * Passes every maximal clique of size at least minSize in this sub-problem to
+     * {@code action}, as soon as it is found, and stops early once
+     * {@code System.currentTimeMillis()} reaches the deadline, even if no clique is found.
+     * @param minSize The minimum size of a clique that is reported.
+     * @param deadline The time in milliseconds at which to stop.
+     * @param action Receives each clique and returns false to stop the search.
+     * @return false if {@code action} or the deadline stopped the search, true otherwise.
+     */
+    boolean forEach(int minSize, long deadline, Predicate<int[]> action) {
+        return subgraph.maximalCliques(newR(), 1, P, X, minSize, deadline, clique -> {
+            toNodeIds(clique);
+            return action.test(clique);
+        });
+    }
+
+    /**
+     * Returns every maximal clique of size at least minSize in this sub-problem.
+     * @param minSize The minimum size of a clique that is returned.
+     * @param parallel If true, large branches of the search are split into ForkJoin tasks.
+     * @return The cliques found.
+     */
+    List<int[]> collect(int minSize, boolean parallel) {
+        List<int[]> cliques = subgraph.maximalCliques(newR(), 1, P, X, minSize, parallel);
+        for (int[] clique : cliques) {
+            toNodeIds(clique);
+        }
+        return cliques;
+    }
+
+    /**
+     * Passes every leaf of the succinct clique tree of this sub-problem to {@code leaf} (see
+     * {@link BitSetGraph#cliqueTree}). The excluded set X is ignored, so for a sub-problem
+     * created by {@link #inOrdering} the leaves stand for every clique whose first node in
+     * the vertex ordering is v. {@code held[0]} is v, and the other held and pivot nodes are
+     * indices into {@code members}.
+     * @param leaf Receives each leaf of the tree.
+     */
+    void cliqueTree(BitSetGraph.CliqueTreeLeaf leaf) {
+        subgraph.cliqueTree(newR(), 1, new int[subgraph.n], 0, P, leaf);
+    }
+
+    private int[] newR() {
+        int[] R = new int[subgraph.n + 1];
+        R[0] = v;
+        return R;
+    }
+
+    /**
+     * Replaces the subgraph indices in {@code clique[1..]} with node ids.
+     */
+    private void toNodeIds(int[] clique) {
+        for (int i = 1; i < clique.length; i++) {
+            clique[i] = members[clique[i]];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, compact representation of an undirected graph with nodes of type V. Every
+ * node is interned to a dense int id in {@code [0, numNodes())}, and the adjacency lists are
+ * stored in compressed sparse row (CSR) form: the neighbors of the node with id u are
+ * {@code targets[offsets[u]], ..., targets[offsets[u + 1] - 1]}, sorted in ascending order.
+ * The functions in {@link Graphs} that take a {@code CompactGraph} work on the int ids
+ * and only map back to V when returning their results.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class CompactGraph<V> {
+
+    // id -> node, and node -> id
+    final List<V> nodes;
+    final Map<V, Integer> ids;
+
+    // CSR adjacency lists, each one sorted in ascending order
+    final int[] offsets;
+    final int[] targets;
+
+    /**
+     * Creates a compact copy of {@code g}. Later changes to {@code g} are not reflected in
+     * the copy.
+     * @param g The graph to copy.
+     */
+    public CompactGraph(Graph<V> g) {
+        int n = g.numNodes();
+        nodes = new ArrayList<>(g.adjList.keySet());
+        ids = new HashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            ids.put(nodes.get(i), i);
+        }
+        offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + g.adjList.get(nodes.get(i)).size();
+        }
+        targets = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (V w : g.adjList.get(nodes.get(i))) {
+                targets[k++] = ids.get(w);
+            }
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        }
+    }
+
+    public int numNodes() {
+        return nodes.size();
+    }
+
+    public int numEdges() {
+        return targets.length / 2;
+    }
+
+    /**
+     * Returns an unmodifiable view of the nodes of this graph, where the node at index i
+     * is the node with id i.
+     * @return The nodes of this graph, ordered by id.
+     */
+    public List<V> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Returns the id of the specified node.
+     * @param v A node.
+     * @return The id of {@code v}, or -1 if {@code v} is not in this graph.
+     */
+    public int id(V v) {
+        Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the node with the specified id.
+     * @param id An id in {@code [0, numNodes())}.
+     * @return The node with the specified id.
+     */
+    public V node(int id) {
+        return nodes.get(id);
+    }
+
+    public int degree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+
+    /**
+     * Returns a copy of the ids of the neighbors of u, sorted in ascending order.
+     * @param u The id of a node in the graph.
+     * @return The ids of the neighbors of u, sorted in ascending order.
+     */
+    public int[] neighbors(int u) {
+        return Arrays.copyOfRange(targets, offsets[u], offsets[u + 1]);
+    }
+
+    /**
+     * Returns true if the edge {u, v} is in this graph, using a binary search over the
+     * smaller of the two adjacency lists.
+     * @param u The id of a node in the graph.
+     * @param v The id of a node in the graph.
+     * @return true if u and v are neighbors, false otherwise.
+     */
+    public boolean hasEdge(int u, int v) {
+        if (degree(u) > degree(v)) {
+            int tmp = u;
+            u = v;
+            v = tmp;
+        }
+        return Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v) >= 0;
+    }
+
+    /**
+     * Maps the first {@code length} ids in {@code idArray} back to their nodes.
+     * @param idArray An array of node ids.
+     * @param length The number of ids to map.
+     * @return A list of the corresponding nodes, in the same order.
+     */
+    List<V> toNodes(int[] idArray, int length) {
+        List<V> result = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            result.add(nodes.get(idArray[i]));
+        }
+        return result;
+    }
+}
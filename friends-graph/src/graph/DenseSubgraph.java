@@ -0,0 +1,62 @@
+package graph;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of {@link Graphs#densestSubgraphApprox(CompactGraph, int)}: the densest subgraph
+ * found by greedy peeling, along with the density found by each pass and an upper bound on the
+ * density of any subgraph, so that the caller can tell how far from optimal the result can be.
+ * The density of a subgraph is its number of edges divided by its number of nodes.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class DenseSubgraph<V> {
+
+    private final List<V> nodes;
+    private final double density;
+    private final double[] passDensities;
+    private final double upperBound;
+
+    DenseSubgraph(List<V> nodes, double density, double[] passDensities, double upperBound) {
+        this.nodes = nodes;
+        this.density = density;
+        this.passDensities = passDensities;
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * Returns the nodes of the densest subgraph that was found.
+     * @return A copy of the nodes of the subgraph.
+     */
+    public List<V> nodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    /**
+     * Returns the density of the subgraph returned by {@link #nodes()}.
+     * @return The number of edges of the subgraph divided by its number of nodes.
+     */
+    public double density() {
+        return density;
+    }
+
+    /**
+     * Returns the density of the densest subgraph found by each peeling pass. The first pass is
+     * Charikar's greedy peeling, which is a 2-approximation, and the later passes are the
+     * Greedy++ refinements.
+     * @return A copy of the density found by each pass, in order.
+     */
+    public double[] passDensities() {
+        return passDensities.clone();
+    }
+
+    /**
+     * Returns an upper bound on the density of every subgraph of the graph. The optimal density
+     * is between {@link #density()} and this value.
+     * @return An upper bound on the optimal density.
+     */
+    public double upperBound() {
+        return upperBound;
+    }
+}
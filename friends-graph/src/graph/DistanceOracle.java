@@ -0,0 +1,359 @@
+package graph;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * A precomputed oracle for distance queries on a {@link CompactGraph}, based on landmarks. The
+ * distance from each of k landmark nodes to every node is computed once with a BFS and stored
+ * in one byte per node. By the triangle inequality, for every landmark l,
+ * {@code |d(u, l) - d(v, l)| <= d(u, v) <= d(u, l) + d(l, v)}, so a query takes O(k) time and
+ * returns an upper bound on the distance, which is exact whenever a landmark is on a shortest
+ * path between u and v (in a friends graph, this is often the case for high degree landmarks).
+ * {@link #distance(Object, Object, int)} refines the bounds into the exact distance with a
+ * bidirectional BFS that only has to search up to the upper bound.
+ * <p>
+ * An oracle can be saved to the directory of the .friends files it was built from and loaded
+ * again later, as long as the graph has the same nodes.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class DistanceOracle<V> {
+
+    private static final String ORACLE_FILE = "distances.oracle";
+    private static final String HEADER = "distance oracle v2";
+
+    // distances of at least FAR are stored as FAR and are not used in the bounds, and nodes
+    // that a landmark can not reach at any distance are stored as UNREACHABLE
+    private static final int FAR = 254;
+    private static final int UNREACHABLE = 255;
+
+    private final CompactGraph<V> g;
+    private final int[] landmarks;
+
+    // distances[i][u] is the distance from landmarks[i] to u, as an unsigned byte
+    private final byte[][] distances;
+
+    /**
+     * Builds an oracle with the k nodes of highest degree as landmarks. See
+     * {@link #DistanceOracle(CompactGraph, List)}.
+     * @param g The graph.
+     * @param k The number of landmarks.
+     */
+    public DistanceOracle(CompactGraph<V> g, int k) {
+        this(g, highestDegreeLandmarks(g, k));
+    }
+
+    /**
+     * Builds an oracle with the given landmarks. The BFS from each landmark runs in its own
+     * task on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @param g The graph.
+     * @param landmarks Distinct nodes in the graph.
+     */
+    public DistanceOracle(CompactGraph<V> g, List<V> landmarks) {
+        this.g = g;
+        this.landmarks = new int[landmarks.size()];
+        for (int i = 0; i < this.landmarks.length; i++) {
+            this.landmarks[i] = g.id(landmarks.get(i));
+        }
+        this.distances = new byte[this.landmarks.length][];
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int i = 0; i < this.landmarks.length; i++) {
+            int index = i;
+            tasks.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    distances[index] = landmarkDistances(index);
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    private DistanceOracle(CompactGraph<V> g, int[] landmarks, byte[][] distances) {
+        this.g = g;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Runs a complete BFS from the landmark with the given index, so that a node is only
+     * stored as UNREACHABLE if it is in a different component, and nodes at distance FAR or
+     * more are stored as FAR.
+     */
+    private byte[] landmarkDistances(int index) {
+        LevelBfs bfs = new LevelBfs(g);
+        bfs.run(new int[] { landmarks[index] }, Integer.MAX_VALUE);
+        byte[] row = new byte[g.numNodes()];
+        for (int u = 0; u < row.length; u++) {
+            int d = bfs.level[u];
+            row[u] = (byte) (d == -1 ? UNREACHABLE : Math.min(d, FAR));
+        }
+        return row;
+    }
+
+    /**
+     * Returns the k nodes of highest degree in the given graph, which are good landmarks
+     * because many shortest paths go through them.
+     * @param g The graph.
+     * @param k The number of nodes to return.
+     * @return The k nodes of highest degree, in descending order of degree.
+     */
+    public static <V> List<V> highestDegreeLandmarks(CompactGraph<V> g, int k) {
+        List<Integer> ids = new ArrayList<>();
+        for (int u = 0; u < g.numNodes(); u++) {
+            ids.add(u);
+        }
+        ids.sort((a, b) -> g.degree(b) - g.degree(a));
+        List<V> ans = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, ids.size()); i++) {
+            ans.add(g.node(ids.get(i)));
+        }
+        return ans;
+    }
+
+    /**
+     * Returns k distinct nodes of the given graph chosen uniformly at random.
+     * @param g The graph.
+     * @param k The number of nodes to return.
+     * @param random The source of randomness.
+     * @return k random nodes.
+     */
+    public static <V> List<V> randomLandmarks(CompactGraph<V> g, int k, Random random) {
+        List<V> nodes = new ArrayList<>(g.nodes());
+        Collections.shuffle(nodes, random);
+        return new ArrayList<>(nodes.subList(0, Math.min(k, nodes.size())));
+    }
+
+    public int numLandmarks() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the smallest upper bound on the distance between u and v given by the
+     * landmarks, in O(k) time.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @return An upper bound on the length of the shortest path between u and v, -1 if the
+     * landmarks show that there is no such path, or {@code Integer.MAX_VALUE} if no landmark
+     * is close enough to both of them to give a bound.
+     */
+    public int approximateDistance(V u, V v) {
+        return upperBound(g.id(u), g.id(v));
+    }
+
+    /**
+     * Returns the exact distance between u and v. The landmark bounds are computed first, and
+     * if they are not equal, a bidirectional BFS looks for a path shorter than the upper bound.
+     * The BFS can stop as soon as the two searches are deep enough that any path they could
+     * still find would not be shorter than the upper bound.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @param maxVisited The maximum number of nodes the BFS may visit. If the BFS runs out, the
+     * upper bound from the landmarks is returned instead of the exact distance.
+     * @return The length of the shortest path between u and v (or the upper bound from
+     * {@link #approximateDistance}, if {@code maxVisited} ran out), or -1 if there is no such
+     * path. If {@code maxVisited} ran out and no landmark bounds the distance, this is
+     * {@code Integer.MAX_VALUE}, which means that the distance is unknown rather than that it
+     * is infinite.
+     */
+    public int distance(V u, V v, int maxVisited) {
+        int a = g.id(u);
+        int b = g.id(v);
+        if (a == b) { return 0; }
+        int upper = upperBound(a, b);
+        if (upper == -1 || upper == lowerBound(a, b)) { return upper; }
+        return boundedSearch(a, b, upper, maxVisited);
+    }
+
+    private int upperBound(int a, int b) {
+        if (a == b) { return 0; }
+        int best = Integer.MAX_VALUE;
+        for (byte[] row : distances) {
+            int da = row[a] & 0xff;
+            int db = row[b] & 0xff;
+            if ((da == UNREACHABLE) != (db == UNREACHABLE)) { return -1; }
+            if (da < FAR && db < FAR) { best = Math.min(best, da + db); }
+        }
+        return best;
+    }
+
+    private int lowerBound(int a, int b) {
+        int best = a == b ? 0 : 1;
+        for (byte[] row : distances) {
+            int da = row[a] & 0xff;
+            int db = row[b] & 0xff;
+            if (da < FAR && db < FAR) { best = Math.max(best, Math.abs(da - db)); }
+        }
+        return best;
+    }
+
+    /**
+     * Looks for a path from a to b shorter than {@code upper} with a bidirectional BFS that
+     * expands the smaller frontier one level at a time.
+     * @return The distance between a and b, {@code upper} if there is no shorter path or the
+     * search visited {@code maxVisited} nodes, or -1 if the search showed that there is no
+     * path at all.
+     */
+    private int boundedSearch(int a, int b, int upper, int maxVisited) {
+        int n = g.numNodes();
+        int[] forward = new int[n];
+        int[] backward = new int[n];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[a] = 0;
+        backward[b] = 0;
+        // each side keeps the nodes it has found in BFS order, and its frontier is the range
+        // [start, end) of its queue
+        int[] forwardQueue = new int[n];
+        int[] backwardQueue = new int[n];
+        forwardQueue[0] = a;
+        backwardQueue[0] = b;
+        int forwardStart = 0;
+        int forwardEnd = 1;
+        int backwardStart = 0;
+        int backwardEnd = 1;
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        int visited = 2;
+        while (forwardStart < forwardEnd && backwardStart < backwardEnd) {
+            // any path found by the next level would have length at least this
+            if (forwardDepth + backwardDepth + 1 >= upper) { return upper; }
+            boolean expandForward = forwardEnd - forwardStart <= backwardEnd - backwardStart;
+            int[] queue = expandForward ? forwardQueue : backwardQueue;
+            int start = expandForward ? forwardStart : backwardStart;
+            int end = expandForward ? forwardEnd : backwardEnd;
+            int[] dist = expandForward ? forward : backward;
+            int[] other = expandForward ? backward : forward;
+            int tail = end;
+            for (int k = start; k < end; k++) {
+                int x = queue[k];
+                for (int i = g.offsets[x]; i < g.offsets[x + 1]; i++) {
+                    int y = g.targets[i];
+                    if (dist[y] != -1) { continue; }
+                    dist[y] = dist[x] + 1;
+                    if (other[y] != -1) { return dist[y] + other[y]; }
+                    queue[tail++] = y;
+                    if (++visited >= maxVisited) { return upper; }
+                }
+            }
+            if (expandForward) {
+                forwardStart = end;
+                forwardEnd = tail;
+                forwardDepth++;
+            } else {
+                backwardStart = end;
+                backwardEnd = tail;
+                backwardDepth++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Saves this oracle to the file {@code distances.oracle} in the given directory, e.g. the
+     * directory of the .friends files that the graph was loaded from. The file is replaced
+     * atomically, so a crash while saving leaves the previous file intact.
+     * @param dirpath The path to the directory.
+     * @param keyFunction A function that returns a String that uniquely identifies a node, e.g.
+     * {@code Person::getUniqueKey}.
+     * @throws IOException
+     */
+    public void save(String dirpath, Function<V, String> keyFunction) throws IOException {
+        Path path = Paths.get(dirpath, ORACLE_FILE);
+        Path tmp = path.resolveSibling(ORACLE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeUTF(HEADER);
+            out.writeInt(g.numNodes());
+            out.writeInt(landmarks.length);
+            for (V v : g.nodes()) {
+                out.writeUTF(keyFunction.apply(v));
+            }
+            for (int l : landmarks) {
+                out.writeInt(l);
+            }
+            for (byte[] row : distances) {
+                out.write(row);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads an oracle that was saved with {@link #save} for a graph with the same nodes as
+     * {@code g}. The nodes of {@code g} may be in a different order.
+     * @param g The graph.
+     * @param dirpath The path to the directory that the oracle was saved to.
+     * @param keyFunction The function that the oracle was saved with.
+     * @return The oracle.
+     * @throws IllegalStateException if the file is not an oracle file or was saved for a
+     * graph with different nodes.
+     * @throws IOException
+     */
+    public static <V> DistanceOracle<V> load(CompactGraph<V> g, String dirpath,
+            Function<V, String> keyFunction) throws IOException {
+        Path path = Paths.get(dirpath, ORACLE_FILE);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (!HEADER.equals(in.readUTF())) {
+                throw new IllegalStateException("Not a distance oracle file: " + path);
+            }
+            int n = in.readInt();
+            int k = in.readInt();
+            if (n != g.numNodes()) {
+                throw new IllegalStateException("Distance oracle has " + n
+                        + " nodes but the graph has " + g.numNodes());
+            }
+            Map<String, Integer> ids = new HashMap<>(2 * n);
+            for (int u = 0; u < n; u++) {
+                ids.put(keyFunction.apply(g.node(u)), u);
+            }
+
+            // toGraphId[i] is the id in g of the node with id i when the oracle was saved
+            int[] toGraphId = new int[n];
+            for (int i = 0; i < n; i++) {
+                String key = in.readUTF();
+                Integer id = ids.get(key);
+                if (id == null) {
+                    throw new IllegalStateException("Distance oracle node is not in the graph: "
+                            + key);
+                }
+                toGraphId[i] = id;
+            }
+            int[] landmarks = new int[k];
+            for (int i = 0; i < k; i++) {
+                landmarks[i] = toGraphId[in.readInt()];
+            }
+            byte[][] distances = new byte[k][n];
+            byte[] row = new byte[n];
+            for (int i = 0; i < k; i++) {
+                in.readFully(row);
+                for (int j = 0; j < n; j++) {
+                    distances[i][toGraphId[j]] = row[j];
+                }
+            }
+            return new DistanceOracle<>(g, landmarks, distances);
+        }
+    }
+}
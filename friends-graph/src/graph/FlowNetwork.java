@@ -0,0 +1,230 @@
+package graph;
+import java.util.Arrays;
+
+/**
+ * A flow network on the nodes {@code 0, ..., n - 1} with floating point capacities, solved
+ * with Dinic's algorithm. The edges are stored in arrays in forward-star form: the edges out
+ * of u are {@code first[u]}, {@code next[first[u]]}, ..., until -1. Every edge is added
+ * together with its reverse edge, so the reverse of edge e is always {@code e ^ 1} and
+ * pushing flow along an edge never has to search for its reverse. The capacities of existing
+ * edges can be changed and the flow reset, so a network can be solved many times without
+ * being rebuilt.
+ * @author roger
+ *
+ */
+class FlowNetwork {
+
+    // residual capacities at most this large are treated as 0
+    private static final double EPSILON = 0.000000001;
+
+    final int n;
+    private int numEdges = 0;
+    private final int[] first;
+    private int[] next;
+    private int[] to;
+    private double[] capacity;
+    private double[] flow;
+
+    // the BFS level of each node in the current phase of Dinic's algorithm
+    private final int[] level;
+
+    /**
+     * Creates a network with n nodes and no edges.
+     * @param n The number of nodes.
+     * @param expectedEdges The expected number of calls to {@link #addEdge}, used to size the
+     * edge arrays.
+     */
+    FlowNetwork(int n, int expectedEdges) {
+        this.n = n;
+        this.first = new int[n];
+        Arrays.fill(first, -1);
+        int size = Math.max(2, 2 * expectedEdges);
+        this.next = new int[size];
+        this.to = new int[size];
+        this.capacity = new double[size];
+        this.flow = new double[size];
+        this.level = new int[n];
+    }
+
+    /**
+     * Adds an edge from u to v with capacity {@code capacity}, and its reverse edge from v to
+     * u with capacity {@code reverseCapacity}. An undirected edge is a pair with the same
+     * capacity in both directions.
+     * @param u The tail of the edge.
+     * @param v The head of the edge.
+     * @param capacity The capacity from u to v.
+     * @param reverseCapacity The capacity from v to u.
+     * @return The index of the edge from u to v. The index of its reverse is the returned
+     * value XOR 1.
+     */
+    int addEdge(int u, int v, double capacity, double reverseCapacity) {
+        if (numEdges + 2 > to.length) {
+            int size = 2 * to.length;
+            next = Arrays.copyOf(next, size);
+            to = Arrays.copyOf(to, size);
+            this.capacity = Arrays.copyOf(this.capacity, size);
+            flow = Arrays.copyOf(flow, size);
+        }
+        int e = numEdges;
+        link(e, u, v, capacity);
+        link(e + 1, v, u, reverseCapacity);
+        numEdges += 2;
+        return e;
+    }
+
+    private void link(int e, int u, int v, double c) {
+        to[e] = v;
+        capacity[e] = c;
+        flow[e] = 0;
+        next[e] = first[u];
+        first[u] = e;
+    }
+
+    /**
+     * Sets the capacity of edge e. This does not change the flow, so call {@link #resetFlow}
+     * before solving again if the flow on e could be larger than the new capacity.
+     * @param e The index of an edge.
+     * @param c The new capacity.
+     */
+    void setCapacity(int e, double c) {
+        capacity[e] = c;
+    }
+
+    /**
+     * Sets the flow on every edge to 0.
+     */
+    void resetFlow() {
+        Arrays.fill(flow, 0, numEdges, 0);
+    }
+
+    /**
+     * Pushes as much additional flow as possible from s to t with Dinic's algorithm: each
+     * phase computes the BFS levels of the residual network from s, then finds a blocking
+     * flow using only edges that go from one level to the next, keeping a current edge for
+     * each node so that every edge is skipped at most once per phase.
+     * @param s The source.
+     * @param t The sink, distinct from s.
+     * @return The amount of flow that was added.
+     */
+    double maxFlow(int s, int t) {
+        double total = 0;
+        int[] current = new int[n];
+        int[] path = new int[n];
+        while (computeLevels(s, t)) {
+            System.arraycopy(first, 0, current, 0, n);
+            total += blockingFlow(s, t, current, path);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the nodes that are reachable from s in the residual network. After
+     * {@link #maxFlow} these are the source side of a minimum s-t cut.
+     * @param s The source.
+     * @return An array which is true for the nodes on the source side of the cut.
+     */
+    boolean[] sourceSide(int s) {
+        boolean[] reached = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        reached[s] = true;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = first[u]; e != -1; e = next[e]) {
+                if (!reached[to[e]] && residual(e) > EPSILON) {
+                    reached[to[e]] = true;
+                    queue[tail++] = to[e];
+                }
+            }
+        }
+        return reached;
+    }
+
+    private double residual(int e) {
+        return capacity[e] - flow[e];
+    }
+
+    /**
+     * Computes the BFS level of every node in the residual network.
+     * @return true if t is reachable from s.
+     */
+    private boolean computeLevels(int s, int t) {
+        Arrays.fill(level, -1);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        level[s] = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = first[u]; e != -1; e = next[e]) {
+                int v = to[e];
+                if (level[v] < 0 && residual(e) > EPSILON) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[t] >= 0;
+    }
+
+    /**
+     * Finds a blocking flow in the level graph with an iterative depth-first search.
+     * {@code path[0..depth)} holds the edges of the current path from s.
+     * @return The amount of flow that was pushed.
+     */
+    private double blockingFlow(int s, int t, int[] current, int[] path) {
+        double total = 0;
+        int depth = 0;
+        int u = s;
+        while (true) {
+            if (u == t) {
+                // the first edge of the path with the smallest residual capacity
+                int saturated = 0;
+                double pushed = residual(path[0]);
+                for (int i = 1; i < depth; i++) {
+                    if (residual(path[i]) < pushed) {
+                        pushed = residual(path[i]);
+                        saturated = i;
+                    }
+                }
+                for (int i = 0; i < depth; i++) {
+                    int e = path[i];
+                    flow[e] += pushed;
+                    flow[e ^ 1] -= pushed;
+                }
+
+                // with large capacities, flow + (capacity - flow) can round to a little less
+                // than the capacity, so the bottleneck is saturated exactly
+                int b = path[saturated];
+                flow[b] = capacity[b];
+                flow[b ^ 1] = -capacity[b];
+                total += pushed;
+
+                // continue from the tail of the bottleneck edge
+                depth = saturated;
+                u = to[path[depth] ^ 1];
+                continue;
+            }
+            int e = current[u];
+            while (e != -1 && (residual(e) <= EPSILON || level[to[e]] != level[u] + 1)) {
+                e = next[e];
+            }
+            current[u] = e;
+            if (e != -1) {
+                path[depth++] = e;
+                u = to[e];
+                continue;
+            }
+
+            // u has no way to t, so remove it from the level graph and back up
+            level[u] = -1;
+            if (depth == 0) { return total; }
+            depth--;
+            u = to[path[depth] ^ 1];
+            current[u] = next[current[u]];
+        }
+    }
+}
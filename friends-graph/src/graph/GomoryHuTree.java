@@ -0,0 +1,176 @@
+package graph;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A flow equivalent tree of an undirected graph with unit edge capacities: a tree on the same
+ * nodes such that, for every pair of nodes u and v, the size of a minimum u-v cut in the graph
+ * (the number of edge-disjoint paths between u and v) is the smallest weight on the path from
+ * u to v in the tree. It is built with the simple variant of Gusfield's algorithm
+ * (https://doi.org/10.1137/0219009), so unlike a Gomory-Hu cut tree, removing a tree edge
+ * gives the value of a minimum cut but not necessarily the cut itself. The build runs n - 1
+ * max flows, plus O(n) work per flow to move nodes in the tree, which adds O(n^2) in total;
+ * after it, each query walks the tree path in O(length of the path) time.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class GomoryHuTree<V> {
+
+    private final CompactGraph<V> g;
+
+    // the tree is rooted at node 0; parent[0] = -1, and weight[u] is the weight of the edge
+    // from u to parent[u]
+    private final int[] parent;
+    private final int[] weight;
+    private final int[] depth;
+
+    /**
+     * Builds the flow equivalent tree of the given graph. The max flows run on the common
+     * {@link ForkJoinPool}; see {@link #GomoryHuTree(CompactGraph, int)}.
+     * @param g The graph.
+     */
+    public GomoryHuTree(CompactGraph<V> g) {
+        this(g, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Builds the flow equivalent tree of the given graph with Gusfield's algorithm. For
+     * s = 1, ..., n - 1, it finds a minimum cut between s and t = parent[s], and every later node on the
+     * s side of the cut whose parent is t is moved under s. The cut for s only depends on
+     * parent[s], so the cuts for the next {@code batchSize} nodes are computed in parallel
+     * with the current parents, and then applied in order. A cut is only kept if no earlier
+     * cut of the same batch changed parent[s]; otherwise the next batch starts at s. The
+     * result is the same tree as the sequential algorithm.
+     * @param g The graph.
+     * @param batchSize The number of max flows to run at the same time. A value of 1 runs
+     * them all sequentially in the current thread.
+     */
+    public GomoryHuTree(CompactGraph<V> g, int batchSize) {
+        int n = g.numNodes();
+        this.g = g;
+        this.parent = new int[n];
+        this.weight = new int[n];
+        this.depth = new int[n];
+        if (n == 0) { return; }
+        parent[0] = -1;
+        batchSize = Math.max(1, batchSize);
+
+        int[] reverse = UnitCapacityFlow.reverseSlots(g);
+        List<CutTask> tasks = new ArrayList<>();
+        for (int i = 0; i < Math.min(batchSize, n - 1); i++) {
+            tasks.add(new CutTask(new UnitCapacityFlow(g, reverse), n));
+        }
+        int s = 1;
+        while (s < n) {
+            int size = Math.min(tasks.size(), n - s);
+            List<CutTask> batch = tasks.subList(0, size);
+            for (int i = 0; i < size; i++) {
+                batch.get(i).reinitialize();
+                batch.get(i).s = s + i;
+                batch.get(i).t = parent[s + i];
+            }
+            if (size == 1) {
+                batch.get(0).compute();
+            } else {
+                ForkJoinTask.invokeAll(batch);
+            }
+            for (CutTask task : batch) {
+                if (parent[task.s] != task.t) { break; }
+                applyCut(task.s, task.cut, task.sourceSide);
+                s++;
+            }
+        }
+        for (int u = 1; u < n; u++) {
+            depth[u] = depth[parent[u]] + 1;
+        }
+    }
+
+    /**
+     * Records the minimum s-t cut, where t = parent[s], in the tree.
+     */
+    private void applyCut(int s, int cut, boolean[] sourceSide) {
+        int t = parent[s];
+        weight[s] = cut;
+        for (int u = s + 1; u < parent.length; u++) {
+            if (sourceSide[u] && parent[u] == t) { parent[u] = s; }
+        }
+    }
+
+    /**
+     * Returns the size of a minimum cut between u and v in the graph, i.e. the number of edges
+     * that must be removed to disconnect u from v, which is also the number of edge-disjoint
+     * paths between them.
+     * @param u A node in the graph.
+     * @param v A node in the graph, distinct from u.
+     * @return The size of a minimum u-v cut.
+     */
+    public int minCut(V u, V v) {
+        int a = g.id(u);
+        int b = g.id(v);
+        if (a < 0 || b < 0) {
+            throw new IllegalArgumentException("Node is not in the graph: "
+                    + (a < 0 ? u : v));
+        }
+        if (a == b) {
+            throw new IllegalArgumentException("The two nodes must be distinct: " + u);
+        }
+        int ans = Integer.MAX_VALUE;
+        while (a != b) {
+            if (depth[a] < depth[b]) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            ans = Math.min(ans, weight[a]);
+            a = parent[a];
+        }
+        return ans;
+    }
+
+    /**
+     * Returns the parent of u in the tree, rooted at the node with id 0.
+     * @param u A node in the graph.
+     * @return The parent of u, or null if u is the root.
+     */
+    public V parent(V u) {
+        int p = parent[g.id(u)];
+        return p < 0 ? null : g.node(p);
+    }
+
+    /**
+     * Returns the weight of the tree edge between u and its parent, which is the size of a
+     * minimum cut between them.
+     * @param u A node in the graph other than the root.
+     * @return The weight of the edge from u to its parent.
+     */
+    public int parentWeight(V u) {
+        return weight[g.id(u)];
+    }
+
+    /**
+     * Finds one minimum s-t cut with its own flow solver and buffers.
+     */
+    private static class CutTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final UnitCapacityFlow flow;
+        private final boolean[] sourceSide;
+        int s;
+        int t;
+        int cut;
+
+        CutTask(UnitCapacityFlow flow, int n) {
+            this.flow = flow;
+            this.sourceSide = new boolean[n];
+        }
+
+        @Override
+        protected void compute() {
+            cut = flow.minCut(s, t, sourceSide);
+        }
+    }
+}
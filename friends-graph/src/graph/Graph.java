@@ -1,12 +1,19 @@
 package graph;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A representation of an undirected graph with nodes of type V. Nodes equality
  * is tested using .equals(). This graph disallows self-loops and parallel edges.
+ * The neighbors of each node are kept in a hash set, so adding, removing and testing for an
+ * edge take O(1) expected time. Nodes and neighbors are iterated in insertion order, so
+ * iteration is deterministic for a given sequence of insertions.
  * @author roger
  *
  * @param <V> The type class of the nodes. Ensuring that the nodes don't mutate is left as
@@ -14,7 +21,7 @@ import java.util.Map;
  */
 public class Graph<V> {
     
-    Map<V, List<V>> adjList = new HashMap<>();
+    Map<V, Set<V>> adjList = new LinkedHashMap<>();
     
     /**
      * Creates an empty graph (with zero nodes and zero edges)
@@ -30,19 +37,9 @@ public class Graph<V> {
      */
     public Graph(List<V> nodes, List<V[]> edges)  {
         for (V v : nodes) {
-            adjList.put(v, new ArrayList<>());
-        }
-        for (V[] e : edges) {
-            if (e.length != 2) {
-                throw new IllegalArgumentException("Bad input to Graph constructor");
-            }
-            if (!adjList.containsKey(e[0])) { adjList.put(e[0], new ArrayList<>()); }
-            if (!adjList.containsKey(e[1])) { adjList.put(e[1], new ArrayList<>()); }
-
-            if (e[0].equals(e[1])) { continue; }
-            if (!adjList.get(e[0]).contains(e[1])) { adjList.get(e[0]).add(e[1]); }
-            if (!adjList.get(e[1]).contains(e[0])) { adjList.get(e[1]).add(e[0]); }
+            addNode(v);
         }
+        addEdges(edges);
     }
     
     /**
@@ -52,17 +49,9 @@ public class Graph<V> {
      * @param inputAdjList The input adjacency list
      */
     public Graph(Map<V, List<V>> inputAdjList) {
-        for (V v : inputAdjList.keySet()) {
-            adjList.put(v, new ArrayList<>());
-            List<V> vNeighbors = inputAdjList.get(v);
-            for (V vNeighbor : vNeighbors) {
-                if (v.equals(vNeighbor)) { continue; }
-                if (!adjList.containsKey(vNeighbor)) {
-                    adjList.put(vNeighbor, new ArrayList<>());
-                }
-                if (!adjList.get(v).contains(vNeighbor)) { adjList.get(v).add(vNeighbor); }
-                if (!adjList.get(vNeighbor).contains(v)) { adjList.get(vNeighbor).add(v); }
-            }
+        for (Map.Entry<V, List<V>> e : inputAdjList.entrySet()) {
+            addNode(e.getKey());
+            addEdges(e.getKey(), e.getValue());
         }
     }
     
@@ -72,8 +61,8 @@ public class Graph<V> {
     
     public int numEdges() {
         int numEdges = 0;
-        for (List<V> l : adjList.values()) {
-            numEdges += l.size();
+        for (Set<V> s : adjList.values()) {
+            numEdges += s.size();
         }
         return numEdges / 2;
     }
@@ -96,12 +85,23 @@ public class Graph<V> {
      */
     public Map<V, List<V>> adjList() {
         Map<V, List<V>> copy = new HashMap<>();
-        for (Map.Entry<V, List<V>> e : adjList.entrySet()) {
+        for (Map.Entry<V, Set<V>> e : adjList.entrySet()) {
             copy.put(e.getKey(), new ArrayList<>(e.getValue()));
         }
         return copy;
     }
     
+    /**
+     * Returns true if the (undirected) edge {u, v} is in the graph.
+     * @param u A node.
+     * @param v A node.
+     * @return true if u and v are both in the graph and are neighbors, false otherwise.
+     */
+    public boolean hasEdge(V u, V v) {
+        Set<V> uNeighbors = adjList.get(u);
+        return uNeighbors != null && uNeighbors.contains(v);
+    }
+    
     /**
      * Adds the node to the graph, if it doesn't already exist.
      * @param v The node to add.
@@ -110,7 +110,7 @@ public class Graph<V> {
      */
     public boolean addNode(V v) {
     	if (adjList.containsKey(v)) { return false; }
-    	adjList.put(v, new ArrayList<>());
+    	adjList.put(v, new LinkedHashSet<>());
     	return true;
     }
     
@@ -124,20 +124,52 @@ public class Graph<V> {
      */
     public boolean addEdge(V u, V v) {
     	if (u.equals(v)) { return false; }
-    	
-    	boolean edgeAdded = false;
-    	if (!adjList.containsKey(u)) { adjList.put(u, new ArrayList<>()); }
-    	if (!adjList.containsKey(v)) { adjList.put(v, new ArrayList<>()); }
-    	
-    	if (!adjList.get(u).contains(v)) {
-    		adjList.get(u).add(v);
-    		edgeAdded = true;
-    	}
-    	if (!adjList.get(v).contains(u)) {
+    	addNode(u);
+    	addNode(v);
+    	boolean edgeAdded = adjList.get(u).add(v);
+    	edgeAdded |= adjList.get(v).add(u);
+    	return edgeAdded;
+    }
+    
+    /**
+     * Adds the (undirected) edges {u, v} for every v in {@code neighbors}. Nodes that do not
+     * exist in the graph are added, and self-loops and existing edges are skipped. This is
+     * equivalent to calling {@link #addEdge(Object, Object)} for each neighbor, but only looks
+     * up the neighbors of u once.
+     * @param u A node.
+     * @param neighbors The nodes to connect to u.
+     * @return The number of edges that were added.
+     */
+    public int addEdges(V u, Collection<? extends V> neighbors) {
+    	addNode(u);
+    	Set<V> uNeighbors = adjList.get(u);
+    	int numAdded = 0;
+    	for (V v : neighbors) {
+    		if (u.equals(v)) { continue; }
+    		addNode(v);
+    		if (uNeighbors.add(v)) { numAdded++; }
     		adjList.get(v).add(u);
-    		edgeAdded = true;
     	}
-    	return edgeAdded;
+    	return numAdded;
+    }
+    
+    /**
+     * Adds all of the (undirected) edges in {@code edges}. Nodes that do not exist in the
+     * graph are added, and self-loops and existing edges are skipped.
+     * @param edges A list of edges, each edge is an array of length 2.
+     * @return The number of edges that were added.
+     */
+    public int addEdges(List<V[]> edges) {
+    	int numAdded = 0;
+    	for (V[] e : edges) {
+    		if (e.length != 2) {
+    			throw new IllegalArgumentException("Bad input to Graph.addEdges");
+    		}
+    		addNode(e[0]);
+    		addNode(e[1]);
+    		if (addEdge(e[0], e[1])) { numAdded++; }
+    	}
+    	return numAdded;
     }
         
     /**
@@ -146,8 +178,7 @@ public class Graph<V> {
      */
     public void removeNode(V u) {
     	if (!adjList.containsKey(u)) { return; }
-    	List<V> neighbors = adjList.get(u);
-    	adjList.remove(u);
+    	Set<V> neighbors = adjList.remove(u);
     	for (V v : neighbors) {
     		adjList.get(v).remove(u);
     	}
@@ -168,7 +199,7 @@ public class Graph<V> {
      * Identical to {@code Graphs.distance(this, u, v)}
      * @param u A node in the graph.
      * @param v A node in the graph.
-     * @return The length of the shortest path between u and v.
+     * @return The length of the shortest path between u and v, or -1 if no such path exists.
      */
 
     public int distance(V u, V v) {
@@ -1,14 +1,19 @@
 package graph;
+import java.math.BigInteger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
 
 /**
  * Contains functions and operations for {@link Graph}s to supplement the ones in {@link Graph}.
@@ -19,53 +24,92 @@ public class Graphs {
     
     // used for calculations involving doubles
     private static double EPSILON = 0.000000001;
+    
+    // label propagation stops after this many sweeps, even if some labels still change
+    private static final int MAX_LABEL_PROPAGATION_SWEEPS = 100;
 	
 	/**
      * Returns a list of all of the nodes that are exactly distance d away from source in the
-     * given graph.
+     * given graph. See {@link #bfsLevels(CompactGraph, Collection, int)}.
      * @param g The graph.
      * @param source A node in the graph.
-     * @return A list of all of the nodes that are exactly distance d away from the source.
+     * @return A list of all of the nodes that are exactly distance d away from the source,
+     * which is empty if d < 0.
      */
     public static <V> List<V> distanceDFrom(Graph<V> g, V source, int d) {
-        Set<V> discovered = new HashSet<>();
-        Deque<V> queue = new ArrayDeque<>();
-        discovered.add(source);
-        queue.add(source);
-        int size = queue.size();
-        int currDist = 0;
-        while (!queue.isEmpty() && currDist < d) {
-            for (int i = 0; i < size; i++) {
-                V v = queue.remove();
-                for (V w : g.adjList.get(v)) {
-                    if (!discovered.contains(w)) {
-                        queue.add(w);
-                    }
-                }
-            }
-            currDist++;
+        return distanceDFrom(new CompactGraph<>(g), source, d);
+    }
+
+    /**
+     * Returns a list of all of the nodes that are exactly distance d away from source in the
+     * given graph. See {@link #bfsLevels(CompactGraph, Collection, int)}.
+     * @param g The graph.
+     * @param source A node in the graph.
+     * @return A list of all of the nodes that are exactly distance d away from the source,
+     * which is empty if d < 0.
+     */
+    public static <V> List<V> distanceDFrom(CompactGraph<V> g, V source, int d) {
+        if (d < 0) { return new ArrayList<>(); }
+        List<List<V>> levels = bfsLevels(g, Collections.singletonList(source), d);
+        return levels.size() > d ? levels.get(d) : new ArrayList<>();
+    }
+
+    /**
+     * Returns the nodes at each distance from 0 to d from the given sources. See
+     * {@link #bfsLevels(CompactGraph, Collection, int)}.
+     * @param g The graph.
+     * @param sources Nodes in the graph.
+     * @param d The largest distance.
+     * @return The nodes at each distance from the nearest source.
+     */
+    public static <V> List<List<V>> bfsLevels(Graph<V> g, Collection<V> sources, int d) {
+        return bfsLevels(new CompactGraph<>(g), sources, d);
+    }
+
+    /**
+     * Returns the nodes at each distance from 0 to d from the given sources, where the distance
+     * of a node is its distance to the nearest source, in one breadth-first search. The search
+     * is direction-optimizing: the large middle levels of a friends graph are found by checking
+     * each unvisited node for a neighbor in the frontier, rather than by scanning every edge of
+     * the frontier.
+     * @param g The graph.
+     * @param sources Nodes in the graph. They are the nodes at distance 0.
+     * @param d The largest distance.
+     * @return A list whose element k is the list of nodes at distance k from the sources, for k
+     * from 0 up to d or the largest distance of a node from the sources, whichever is smaller.
+     */
+    public static <V> List<List<V>> bfsLevels(CompactGraph<V> g, Collection<V> sources, int d) {
+        int[] sourceIds = new int[sources.size()];
+        int i = 0;
+        for (V s : sources) {
+            sourceIds[i++] = g.id(s);
         }
-        if (currDist == d) {
-            return new ArrayList<>(queue);
+        List<List<V>> ans = new ArrayList<>();
+        for (int[] level : new LevelBfs(g).run(sourceIds, d)) {
+            ans.add(g.toNodes(level, level.length));
         }
-        return new ArrayList<>();
+        return ans;
     }
-    
+
     /**
      * Returns the length of the shortest path between u and v (the number of edges in the path)
-     * in the given graph.
+     * in the given graph. See {@link #shortestPath(Graph, Object, Object)}.
      * @param g The graph.
      * @param u A node in the graph.
      * @param v A node in the graph.
-     * @return The length of the shortest path between u and v.
+     * @return The length of the shortest path between u and v, or -1 if no such path exists.
      */
     public static <V> int distance(Graph<V> g, V u, V v) {
-        return shortestPath(g, u, v).size() - 1;
+        List<V> path = shortestPath(g, u, v);
+        return path == null ? -1 : path.size() - 1;
     }
-    
+
     /**
      * Returns the sequence of distinct nodes on a shortest path from u to v in the given graph,
-     * including the nodes u and v.
+     * including the nodes u and v. This is a bidirectional BFS: one search grows from u and one
+     * from v, a whole level at a time, always expanding the smaller of the two frontiers, and
+     * it stops at the first node that both searches have reached. That node is on a shortest
+     * path, since the two searches only meet once the sum of their depths is the distance.
      * @param g The graph.
      * @param u A node in the graph.
      * @param v A node in the graph.
@@ -78,44 +122,107 @@ public class Graphs {
             result.add(u);
             return result;
         }
-        Map<V, V> parents = new HashMap<>();
-        Set<V> discovered = new HashSet<>();
-        Deque<V> queue = new ArrayDeque<>();
-        discovered.add(u);
-        queue.add(u);
-        while (!queue.isEmpty()) {
-            int size = queue.size();
-            for (int i = 0; i < size; i++) {
-                V a = queue.remove();
+        // the parent of each node reached by the search from u and by the search from v
+        Map<V, V> forward = new HashMap<>();
+        Map<V, V> backward = new HashMap<>();
+        forward.put(u, u);
+        backward.put(v, v);
+        List<V> forwardFrontier = new ArrayList<>();
+        List<V> backwardFrontier = new ArrayList<>();
+        forwardFrontier.add(u);
+        backwardFrontier.add(v);
+        V meet = null;
+        while (meet == null && !forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+            boolean expandForward = forwardFrontier.size() <= backwardFrontier.size();
+            List<V> frontier = expandForward ? forwardFrontier : backwardFrontier;
+            Map<V, V> parents = expandForward ? forward : backward;
+            Map<V, V> other = expandForward ? backward : forward;
+            List<V> next = new ArrayList<>();
+            for (int i = 0; i < frontier.size() && meet == null; i++) {
+                V a = frontier.get(i);
                 for (V b : g.adjList.get(a)) {
-                    if (!discovered.contains(b)) {
-                        parents.put(b, a);
-                        discovered.add(b);
-                        queue.add(b);
-                        
-                        if (b.equals(v)) {
-                            break;
-                        }
+                    if (parents.containsKey(b)) { continue; }
+                    parents.put(b, a);
+                    next.add(b);
+                    if (other.containsKey(b)) {
+                        meet = b;
+                        break;
                     }
                 }
             }
+            if (expandForward) {
+                forwardFrontier = next;
+            } else {
+                backwardFrontier = next;
+            }
         }
-        if (parents.get(v) == null) { return null; }
+        if (meet == null) { return null; }
         List<V> result = new ArrayList<>();
-        V curr = v;
-        while (parents.get(curr) != null) {
+        for (V curr = meet; !curr.equals(u); curr = forward.get(curr)) {
             result.add(curr);
-            curr = parents.get(curr);
         }
+        result.add(u);
         Collections.reverse(result);
+        for (V curr = meet; !curr.equals(v); ) {
+            curr = backward.get(curr);
+            result.add(curr);
+        }
         return result;
     }
-    
+
+    /**
+     * Returns the length of the shortest path from the source to each of the targets, using a
+     * single BFS from the source that stops as soon as every target has been reached.
+     * @param g The graph.
+     * @param source A node in the graph.
+     * @param targets Nodes. A target that is not in the graph is mapped to -1.
+     * @return A mapping from each target to its distance from the source, or to -1 if there is
+     * no path from the source to it.
+     * @throws IllegalArgumentException if the source is not in the graph.
+     */
+    public static <V> Map<V, Integer> distances(Graph<V> g, V source, Collection<V> targets) {
+        if (!g.adjList.containsKey(source)) {
+            throw new IllegalArgumentException("Not a node: " + source);
+        }
+        Map<V, Integer> ans = new HashMap<>();
+        for (V t : targets) {
+            ans.put(t, -1);
+        }
+        int remaining = ans.size();
+        Map<V, Integer> dist = new HashMap<>();
+        Deque<V> queue = new ArrayDeque<>();
+        dist.put(source, 0);
+        queue.add(source);
+        if (ans.containsKey(source)) {
+            ans.put(source, 0);
+            remaining--;
+        }
+        while (!queue.isEmpty() && remaining > 0) {
+            V a = queue.remove();
+            int d = dist.get(a) + 1;
+            for (V b : g.adjList.get(a)) {
+                if (dist.containsKey(b)) { continue; }
+                dist.put(b, d);
+                queue.add(b);
+                if (ans.containsKey(b)) {
+                    ans.put(b, d);
+                    remaining--;
+                }
+            }
+        }
+        return ans;
+    }
+
     /**
      * Returns a list of nodes that are exactly distance 2 away from u in the given graph.
      * The list is sorted in descending order of the number of length-2
      * paths to u. In the context of a social network, this would return
      * a list of people who you are not friends with but have mutual friends with.
+     * See {@link #topSuggestedFriends(CompactGraph, Object, int, SuggestionScore)}.
+     * <p>
+     * Each call copies g into a new {@link CompactGraph}, which takes O(n + m) time. To get
+     * suggestions for many nodes, build the CompactGraph once and call
+     * {@link #suggestedFriendsFor(CompactGraph, Object, int)} with it instead.
      * @param g The graph.
      * @param u The node in consideration
      * @param minMutualFriends The minimum number of mutual friends of u and a node
@@ -125,21 +232,83 @@ public class Graphs {
      * friends they have with u).
      */
     public static <V> List<V> suggestedFriendsFor(Graph<V> g, V u, int minMutualFriends) {
-        Set<V> friends = new HashSet<>(g.adjList.get(u));
-        List<V> candidates = distanceDFrom(g, u, 2);
-        List<NodeIntPair<V>> candidatesFiltered = new ArrayList<>();
-        for (V v : candidates) {
-            List<V> mutualFriends = mutualFriends(g, u, v);
-            if (!friends.contains(v) && mutualFriends.size() >= minMutualFriends) {
-                candidatesFiltered.add(new NodeIntPair<>(v, mutualFriends.size()));
-            }
-        }
-        candidatesFiltered.sort((p1, p2) -> p2.val - p1.val);
-        return candidatesFiltered.stream()
-                .map(p -> p.node)
-                .collect(Collectors.toCollection(ArrayList<V>::new));
+        return suggestedFriendsFor(new CompactGraph<>(g), u, minMutualFriends);
     }
-    
+
+    /**
+     * Returns a list of nodes that are exactly distance 2 away from u in the given graph,
+     * sorted in descending order of the number of mutual friends they have with u. See
+     * {@link #topSuggestedFriends(CompactGraph, Object, int, SuggestionScore)}.
+     * @param g The graph.
+     * @param u The node in consideration
+     * @param minMutualFriends The minimum number of mutual friends of u and a node
+     * v in order for v to be added to the returned List.
+     * @return A list of nodes sorted in descending order by the number of mutual friends they
+     * have with u.
+     */
+    public static <V> List<V> suggestedFriendsFor(CompactGraph<V> g, V u, int minMutualFriends) {
+        return topSuggestedFriends(g, u, Integer.MAX_VALUE, minMutualFriends,
+                SuggestionScore.MUTUAL_FRIENDS);
+    }
+
+    /**
+     * Returns the k best friend suggestions for u. See
+     * {@link #topSuggestedFriends(CompactGraph, Object, int, SuggestionScore)}.
+     * <p>
+     * Each call copies g into a new {@link CompactGraph}, which takes O(n + m) time, much more
+     * than the search itself. To get suggestions for many nodes, build the CompactGraph once
+     * and reuse it, as {@link SuggestionsJob} does.
+     * @param g The graph.
+     * @param u A node in the graph.
+     * @param k The maximum number of suggestions. If k is not positive, the list is empty.
+     * @param score How to score a suggestion.
+     * @return The suggestions, sorted in descending order of their score.
+     */
+    public static <V> List<V> topSuggestedFriends(Graph<V> g, V u, int k, SuggestionScore score) {
+        return topSuggestedFriends(new CompactGraph<>(g), u, k, score);
+    }
+
+    /**
+     * Returns the k best friend suggestions for u: the nodes that are not u or neighbors of u,
+     * but have mutual friends with u, with the highest scores. The neighbors of the neighbors
+     * of u are walked once, adding up the score of every node reached in a primitive array,
+     * and the best k are selected with a heap of size k, so the running time is linear in the
+     * number of length-2 paths from u. Ties are broken arbitrarily.
+     * @param g The graph.
+     * @param u A node in the graph.
+     * @param k The maximum number of suggestions. If k is not positive, the list is empty.
+     * @param score How to score a suggestion.
+     * @return The suggestions, sorted in descending order of their score.
+     */
+    public static <V> List<V> topSuggestedFriends(CompactGraph<V> g, V u, int k,
+            SuggestionScore score) {
+        return topSuggestedFriends(g, u, k, 1, score);
+    }
+
+    private static <V> List<V> topSuggestedFriends(CompactGraph<V> g, V u, int k,
+            int minMutualFriends, SuggestionScore score) {
+        if (k <= 0) { return new ArrayList<>(); }
+        int[] ids = new int[Math.min(k, g.numNodes())];
+        int size = new TwoHopCounter(g, score).topK(g.id(u), k, minMutualFriends, ids, null);
+        return g.toNodes(ids, size);
+    }
+
+    /**
+     * The ways to score a friend suggestion v for u, as a sum over the mutual friends w of u
+     * and v.
+     */
+    public enum SuggestionScore {
+        /** Each mutual friend adds 1, so the score is the number of mutual friends. */
+        MUTUAL_FRIENDS,
+        /**
+         * Each mutual friend w adds 1 / log(deg(w)) (Adamic and Adar), so that a mutual friend
+         * with few friends counts for more than one with many.
+         */
+        ADAMIC_ADAR,
+        /** Each mutual friend w adds 1 / deg(w) (resource allocation, Zhou et al.). */
+        RESOURCE_ALLOCATION
+    }
+
     /**
      * Returns a list of nodes in the graph that are neighbors with both u and v.
      * @param g The graph.
@@ -148,10 +317,7 @@ public class Graphs {
      * @return A list of nodes in the graph that are neighbors with both u and v.
      */
     public static <V> List<V> mutualFriends(Graph<V> g, V u, V w) {
-        Set<V> uNeighbors = new HashSet<>();
-        for (V uNeighbor : g.adjList.get(u)) {
-            uNeighbors.add(uNeighbor);
-        }
+        Set<V> uNeighbors = g.adjList.get(u);
         List<V> result = new ArrayList<>();
         for (V wNeighbor : g.adjList.get(w)) {
             if (uNeighbors.contains(wNeighbor)) {
@@ -160,7 +326,176 @@ public class Graphs {
         }
         return result;
     }
-	
+
+    /**
+     * Returns the length of the shortest path between u and v (the number of edges in the path)
+     * in the given graph. See {@link #shortestPath(CompactGraph, Object, Object)}.
+     * @param g The graph.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @return The length of the shortest path between u and v, or -1 if no such path exists.
+     */
+    public static <V> int distance(CompactGraph<V> g, V u, V v) {
+        List<V> path = shortestPath(g, u, v);
+        return path == null ? -1 : path.size() - 1;
+    }
+
+    /**
+     * Returns the sequence of distinct nodes on a shortest path from u to v in the given graph,
+     * including the nodes u and v. This is the bidirectional BFS of
+     * {@link #shortestPath(Graph, Object, Object)} on the int ids of {@code g}. The frontier
+     * with the smaller sum of degrees is expanded, since that is the amount of work it takes.
+     * @param g The graph.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @return The sequence of distinct nodes on a shortest path from u to v, including the
+     * nodes u and v. Returns null if no such path exists.
+     */
+    public static <V> List<V> shortestPath(CompactGraph<V> g, V u, V v) {
+        int source = g.id(u);
+        int target = g.id(v);
+        if (source == target) {
+            List<V> result = new ArrayList<>();
+            result.add(u);
+            return result;
+        }
+        int n = g.numNodes();
+        // the parent of each node reached by the search from u and by the search from v, or -1
+        int[] forward = new int[n];
+        int[] backward = new int[n];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[source] = source;
+        backward[target] = target;
+
+        // each side's frontier is queue[head..tail), and its sum of degrees is work
+        int[] forwardQueue = new int[n];
+        int[] backwardQueue = new int[n];
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        forwardQueue[forwardTail++] = source;
+        backwardQueue[backwardTail++] = target;
+        long forwardWork = g.degree(source);
+        long backwardWork = g.degree(target);
+        int meet = -1;
+        while (meet == -1 && forwardHead < forwardTail && backwardHead < backwardTail) {
+            boolean expandForward = forwardWork <= backwardWork;
+            int[] queue = expandForward ? forwardQueue : backwardQueue;
+            int[] parents = expandForward ? forward : backward;
+            int[] other = expandForward ? backward : forward;
+            int head = expandForward ? forwardHead : backwardHead;
+            int end = expandForward ? forwardTail : backwardTail;
+            int tail = end;
+            long work = 0;
+            for (; head < end && meet == -1; head++) {
+                int a = queue[head];
+                for (int i = g.offsets[a]; i < g.offsets[a + 1]; i++) {
+                    int b = g.targets[i];
+                    if (parents[b] != -1) { continue; }
+                    parents[b] = a;
+                    queue[tail++] = b;
+                    work += g.degree(b);
+                    if (other[b] != -1) {
+                        meet = b;
+                        break;
+                    }
+                }
+            }
+            if (expandForward) {
+                forwardHead = end;
+                forwardTail = tail;
+                forwardWork = work;
+            } else {
+                backwardHead = end;
+                backwardTail = tail;
+                backwardWork = work;
+            }
+        }
+        if (meet == -1) { return null; }
+        List<V> result = new ArrayList<>();
+        for (int curr = meet; curr != source; curr = forward[curr]) {
+            result.add(g.node(curr));
+        }
+        result.add(u);
+        Collections.reverse(result);
+        for (int curr = meet; curr != target; ) {
+            curr = backward[curr];
+            result.add(g.node(curr));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the length of the shortest path from the source to each of the targets, using a
+     * single BFS from the source that stops as soon as every target has been reached.
+     * @param g The graph.
+     * @param source A node in the graph.
+     * @param targets Nodes. A target that is not in the graph is mapped to -1.
+     * @return A mapping from each target to its distance from the source, or to -1 if there is
+     * no path from the source to it.
+     * @throws IllegalArgumentException if the source is not in the graph.
+     */
+    public static <V> Map<V, Integer> distances(CompactGraph<V> g, V source,
+            Collection<V> targets) {
+        int n = g.numNodes();
+        boolean[] isTarget = new boolean[n];
+        int remaining = 0;
+        for (V t : targets) {
+            int id = g.id(t);
+            if (id != -1 && !isTarget[id]) {
+                isTarget[id] = true;
+                remaining++;
+            }
+        }
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        int s = g.id(source);
+        if (s == -1) {
+            throw new IllegalArgumentException("Not a node: " + source);
+        }
+        dist[s] = 0;
+        queue[tail++] = s;
+        if (isTarget[s]) { remaining--; }
+        while (head < tail && remaining > 0) {
+            int a = queue[head++];
+            for (int i = g.offsets[a]; i < g.offsets[a + 1]; i++) {
+                int b = g.targets[i];
+                if (dist[b] != -1) { continue; }
+                dist[b] = dist[a] + 1;
+                queue[tail++] = b;
+                if (isTarget[b]) { remaining--; }
+            }
+        }
+        Map<V, Integer> ans = new HashMap<>();
+        for (V t : targets) {
+            int id = g.id(t);
+            ans.put(t, id == -1 ? -1 : dist[id]);
+        }
+        return ans;
+    }
+
+    /**
+     * Returns a list of nodes in the graph that are neighbors with both u and w. Since the
+     * adjacency lists of a {@link CompactGraph} are sorted, this is a single linear merge.
+     * @param g The graph.
+     * @param u A node in the graph.
+     * @param w A node in the graph.
+     * @return A list of nodes in the graph that are neighbors with both u and w.
+     */
+    public static <V> List<V> mutualFriends(CompactGraph<V> g, V u, V w) {
+        int a = g.id(u);
+        int b = g.id(w);
+        int[] common = new int[Math.min(g.degree(a), g.degree(b))];
+        int size = intersectSorted(g.targets, g.offsets[a], g.offsets[a + 1],
+                g.targets, g.offsets[b], g.offsets[b + 1], null, common, 0);
+        return g.toNodes(common, size);
+    }
+
 	/**
      * Finds the maximum flow from the source to the sink in the given graph, assuming that all
      * edges have capacity 1.
@@ -170,376 +505,1477 @@ public class Graphs {
      * @return The value of the maximum flow from the source to the sink.
      */
     public static <V> int maxFlow(Graph<V> g, V source, V sink) {
-        return edmondsKarp(Graphs.toFlowNetwork(g), source, sink);
+        return maxFlow(new CompactGraph<>(g), source, sink);
     }
     
     /**
-     * Finds the nodes which induce the highest density subgraph in the given
-     * graph.
-     * Implements the algorithm described in:
-     * https://www2.eecs.berkeley.edu/Pubs/TechRpts/1984/CSD-84-171.pdf
+     * Finds the maximum flow from the source to the sink in the given graph, assuming that all
+     * edges have capacity 1, with Dinic's algorithm specialized for unit capacities. To answer
+     * many pairs, build a {@link GomoryHuTree} instead.
+     * @param g The undirected graph.
+     * @param source The source node.
+     * @param sink The sink node, distinct from the source.
+     * @return The value of the maximum flow from the source to the sink.
+     */
+    public static <V> int maxFlow(CompactGraph<V> g, V source, V sink) {
+        UnitCapacityFlow flow = new UnitCapacityFlow(g, UnitCapacityFlow.reverseSlots(g));
+        return flow.minCut(g.id(source), g.id(sink), new boolean[g.numNodes()]);
+    }
+    
+    /**
+     * Builds a flow equivalent tree of the given graph, assuming that all edges have capacity
+     * 1. See {@link GomoryHuTree}.
+     * @param g The undirected graph.
+     * @return The tree, which answers min cut queries between any two nodes.
+     */
+    public static <V> GomoryHuTree<V> gomoryHuTree(Graph<V> g) {
+        return new GomoryHuTree<>(new CompactGraph<>(g));
+    }
+    
+    /**
+     * Finds the nodes which induce the highest density subgraph in the given graph. See
+     * {@link #highestDensitySubgraph(CompactGraph)}.
      * @param graph The graph.
-     * @param s An arbitrary node that is NOT in {@code graph}.
-     * @param t Another arbitrary node that is NOT in {@code graph} (distinct from s).
+     * @param s Not used.
+     * @param t Not used.
      * @return The nodes which induce the maximum density subgraph.
+     * @deprecated The flow network no longer needs extra nodes; use
+     * {@link #highestDensitySubgraph(Graph)}.
      */
+    @Deprecated
     public static <V> List<V> highestDensitySubgraph(Graph<V> graph, V s, V t) {
-        double epsilon = 0.000000001;
-        
-        // initialize some parameters
-        double g = 1;
+        return highestDensitySubgraph(graph);
+    }
+    
+    /**
+     * Finds the nodes which induce the highest density subgraph in the given graph. See
+     * {@link #highestDensitySubgraph(CompactGraph)}.
+     * @param graph The graph.
+     * @return The nodes which induce the maximum density subgraph.
+     */
+    public static <V> List<V> highestDensitySubgraph(Graph<V> graph) {
+        return highestDensitySubgraph(new CompactGraph<>(graph));
+    }
+    
+    /**
+     * Finds the nodes which induce the highest density subgraph (the subgraph with the most
+     * edges per node) in the given graph.
+     * Implements the algorithm described in:
+     * https://www2.eecs.berkeley.edu/Pubs/TechRpts/1984/CSD-84-171.pdf
+     * The algorithm binary searches on a guess g of the density. For each guess it finds a
+     * minimum cut in a network with a source s, a sink t, an edge from s to each node with
+     * capacity m, an edge in each direction for every edge of the graph with capacity 1, and an
+     * edge from each node v to t with capacity m + 2g - deg(v). The network is built once, and
+     * only the capacities of the edges to t change between guesses. The densities of two
+     * subgraphs differ by at least 1 / (n(n - 1)), so the search stops once the interval is
+     * smaller than that.
+     * @param graph The graph.
+     * @return The nodes which induce the maximum density subgraph, or an empty list if the graph
+     * has no edges.
+     */
+    public static <V> List<V> highestDensitySubgraph(CompactGraph<V> graph) {
+        int n = graph.numNodes();
         int m = graph.numEdges();
+        if (m == 0) { return new ArrayList<>(); }
+        int s = n;
+        int t = n + 1;
+        FlowNetwork network = new FlowNetwork(n + 2, 2 * n + m);
+        int[] sinkEdges = new int[n];
+        for (int v = 0; v < n; v++) {
+            network.addEdge(s, v, m, 0);
+            sinkEdges[v] = network.addEdge(v, t, m, 0);
+            for (int i = graph.offsets[v]; i < graph.offsets[v + 1]; i++) {
+                if (v < graph.targets[i]) { network.addEdge(v, graph.targets[i], 1, 1); }
+            }
+        }
         
-        // start algorithm
         double l = 0;
         double u = m;
+        double minGap = 1.0 / ((double) n * (n - 1));
         List<V> V1 = new ArrayList<>();
-        while (u - l >= 1 - epsilon) {
-            g = (u + l) / 2;
-            Map<V, List<DoubleFlowEdge<V>>> flowGraph = constructN(graph, s, t, g);
-            List<List<V>> STCut = minSTCut(flowGraph, s, t);
-            List<V> S = STCut.get(0);
-            if (S.size() == 1 && S.get(0).equals(s)) {
+        while (u - l >= minGap) {
+            double g = (u + l) / 2;
+            for (int v = 0; v < n; v++) {
+                network.setCapacity(sinkEdges[v], m + 2 * g - graph.degree(v));
+            }
+            network.resetFlow();
+            network.maxFlow(s, t);
+            boolean[] S = network.sourceSide(s);
+            List<V> nodes = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                if (S[v]) { nodes.add(graph.node(v)); }
+            }
+            if (nodes.isEmpty()) {
                 u = g;
             } else {
                 l = g;
-                S.remove(s);
-                V1 = S;
+                V1 = nodes;
             }
         }
         return V1;
     }
     
     /**
-     * A helper method for {@code highestDensitySubgraph()} which constructs the flow network
-     * described in the algorithm found in
-     * https://www2.eecs.berkeley.edu/Pubs/TechRpts/1984/CSD-84-171.pdf.
-     * @return
+     * Approximates the highest density subgraph of the given graph. See
+     * {@link #densestSubgraphApprox(CompactGraph, int)}.
+     * @param graph The graph.
+     * @param iterations The number of peeling passes.
+     * @return The densest subgraph found, with the density found by each pass.
      */
-    private static <V> Map<V, List<DoubleFlowEdge<V>>> constructN(Graph<V> graph,
-            V s, V t, double g) {
-        int m = graph.numEdges();
-        
-        Map<V, List<DoubleFlowEdge<V>>> flowGraph = new HashMap<>();
-        List<DoubleFlowEdge<V>> sNeighbors = new ArrayList<>();
-        flowGraph.put(t, new ArrayList<>());
-        for (V v : graph.adjList.keySet()) {
-            flowGraph.put(v, new ArrayList<>());
-            sNeighbors.add(new DoubleFlowEdge<>(s, v, m, 0));
-        }
-        for (Map.Entry<V, List<V>> e : graph.adjList.entrySet()) {
-            V v = e.getKey();
-            List<DoubleFlowEdge<V>> neighbors = flowGraph.get(v);
-            for (V w : e.getValue()) {
-                neighbors.add(new DoubleFlowEdge<>(v, w, 1, 0));
-            }
-            neighbors.add(new DoubleFlowEdge<>(v, t, m + 2 * g - graph.outDegree(v), 0));
-        }
-        return flowGraph;
-    }
-
-    /**
-     * Finds the minimum s-t cut of the flow network. After this algorithm terminates,
-     * adjList will have the flows of the final residual network.
-     * @param adjList The adjacency list of a flow network.
-     * @param s A node in the graph.
-     * @param t A node in the graph (distinct from t).
-     * @return The nodes for each of the two parts of the minimum ST cut of the graph.
-     * The returned {@code List} has size 2 and each part of the partition is a {@code List} of
-     * nodes stored in the 0th and 1st indices of the returned {@code List}, respectively.
-     * indices of the returned {@code List}
-     */
-    private static <V> List<List<V>> minSTCut(Map<V, List<DoubleFlowEdge<V>>> adjList,
-            V s, V t) {
-        edmondsKarp(adjList, s, t);
-        Set<V> discovered = new HashSet<>();
-        discovered.add(s);
-        Deque<V> queue = new ArrayDeque<>();
-        queue.add(s);
-        while (!queue.isEmpty()) {
-            V curr = queue.remove();
-            for (DoubleFlowEdge<V> fe : adjList.get(curr)) {
-                if (fe.capacity - fe.flow > 0) {
-                    discovered.add(fe.node2);
-                    queue.add(fe.node2);
-                }
-            }
-        }
-        List<V> partition1 = new ArrayList<>(discovered);
-        List<V> partition2 = new ArrayList<>();
-        for (V v : adjList.keySet()) {
-            if (!discovered.contains(v)) {
-                partition2.add(v);
-            }
-        }
-        List<List<V>> ans = new ArrayList<>();
-        ans.add(partition1);
-        ans.add(partition2);
-        return ans;
+    public static <V> DenseSubgraph<V> densestSubgraphApprox(Graph<V> graph, int iterations) {
+        return densestSubgraphApprox(new CompactGraph<>(graph), iterations);
     }
-    
+
     /**
-     * Performs the Edmonds-Karp variation of Ford-Fulkerson method using adjacency lists and
-     * returns the resulting max flow. When the algorithm terminates, adjList will contain
-     * the final residual network.
-     * @param adjList The adjacency list for the flow network.
-     * @param source The source node.
-     * @param sink The sink node.
-     * @return The maximum flow from {@code source} to {@code sink}.
+     * Approximates the highest density subgraph (the subgraph with the most edges per node) of
+     * the given graph with the Greedy++ algorithm of Boob et al.
+     * (https://arxiv.org/abs/1910.07087). Each pass repeatedly removes the node v that
+     * minimizes load(v) + deg(v), where deg(v) is its degree among the remaining nodes, adds
+     * deg(v) to load(v), and keeps the densest set of remaining nodes seen along the way. The
+     * loads start at 0, so the first pass is Charikar's greedy peeling (a 2-approximation), and
+     * each later pass moves the result toward the optimum. The keys only drop by 1 when a
+     * neighbor is removed, so the nodes are kept in a bucket queue and each pass takes
+     * O(n + m + maxLoad) time. Over all passes, every edge is charged to one of its endpoints
+     * each time, so the largest load divided by the number of passes is an upper bound on the
+     * optimal density.
+     * @param graph The graph.
+     * @param iterations The number of peeling passes, at least 1.
+     * @return The densest subgraph found, with the density found by each pass.
      */
-    private static <V> int edmondsKarp(Map<V, List<DoubleFlowEdge<V>>> adjList,
-            V source, V sink) {
-        int flow = 0;
-        
-        while (true) {
-            Map<V, V> parents = new HashMap<>();
-            Deque<V> queue = new ArrayDeque<>();
-            queue.add(source);
-            while (!queue.isEmpty() && parents.get(sink) == null) {
-                V curr = queue.remove();
-                for (DoubleFlowEdge<V> fe : adjList.get(curr)) {
-                    if (parents.get(fe.node2) == null && !fe.node2.equals(source)
-                            && fe.capacity > fe.flow) {
-                        parents.put(fe.node2, curr);
-                        queue.add(fe.node2);
-                    }
-                    if (fe.node2 == sink) {
-                        break;
-                    }
-                }
+    public static <V> DenseSubgraph<V> densestSubgraphApprox(CompactGraph<V> graph,
+            int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1: " + iterations);
+        }
+        int n = graph.numNodes();
+        int m = graph.numEdges();
+        int[] loads = new int[n];
+        int[] degrees = new int[n];
+        boolean[] removed = new boolean[n];
+        int[] order = new int[n];
+        int[] bucketNext = new int[n];
+        int[] bucketPrev = new int[n];
+        double[] passDensities = new double[iterations];
+        List<V> bestNodes = new ArrayList<>();
+        double bestDensity = 0;
+
+        for (int pass = 0; pass < iterations; pass++) {
+            int minKey = Integer.MAX_VALUE;
+            int maxKey = 0;
+            for (int v = 0; v < n; v++) {
+                degrees[v] = graph.degree(v);
+                removed[v] = false;
+                minKey = Math.min(minKey, loads[v]);
+                maxKey = Math.max(maxKey, loads[v] + degrees[v]);
             }
-            
-            // augment flow with the new augmenting path, if it exists
-            if (parents.get(sink) != null) {
-                double pathFlow = Integer.MAX_VALUE;
-                List<DoubleFlowEdge<V>> pathEdges = new ArrayList<>();
-                V curr = sink;
-                while (parents.get(curr) != null) {
-                    V parent = parents.get(curr);
-                    for (DoubleFlowEdge<V> childEdge : adjList.get(parent)) {
-                        if (childEdge.node2.equals(curr)) {
-                            pathFlow = Math.min(pathFlow, childEdge.capacity - childEdge.flow);
-                            pathEdges.add(childEdge);
-                            break;
-                        }
-                    }
-                    curr = parent;
+
+            // bucketHead[k] is the first node whose key is minKey + k, and the rest of the
+            // bucket is a doubly linked list through bucketNext and bucketPrev. The key of a
+            // node never drops below its load, so the smallest load is the smallest key.
+            int[] bucketHead = new int[n == 0 ? 0 : maxKey - minKey + 1];
+            Arrays.fill(bucketHead, -1);
+            for (int v = 0; v < n; v++) {
+                bucketInsert(bucketHead, bucketNext, bucketPrev, v,
+                        loads[v] + degrees[v] - minKey);
+            }
+
+            int remainingEdges = m;
+            double passDensity = n == 0 ? 0 : (double) m / n;
+            int passBest = 0;
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                while (bucketHead[k] == -1) { k++; }
+                int v = bucketHead[k];
+                bucketRemove(bucketHead, bucketNext, bucketPrev, v, k);
+                removed[v] = true;
+                order[i] = v;
+                loads[v] += degrees[v];
+                remainingEdges -= degrees[v];
+                for (int j = graph.offsets[v]; j < graph.offsets[v + 1]; j++) {
+                    int w = graph.targets[j];
+                    if (removed[w]) { continue; }
+                    int key = loads[w] + degrees[w] - minKey;
+                    bucketRemove(bucketHead, bucketNext, bucketPrev, w, key);
+                    degrees[w]--;
+                    bucketInsert(bucketHead, bucketNext, bucketPrev, w, key - 1);
                 }
-                for (DoubleFlowEdge<V> pathEdge : pathEdges) {
-                    pathEdge.flow += pathFlow;
-                    for (DoubleFlowEdge<V> reversedFe : adjList.get(pathEdge.node2)) {
-                        if (reversedFe.node2.equals(pathEdge.node1)) {
-                            reversedFe.flow -= pathFlow;
-                        }
-                    }
-                    flow += pathFlow;
+                // a neighbor of v can now have a key one less than the key of v
+                k = Math.max(0, k - 1);
+
+                int remainingNodes = n - i - 1;
+                if (remainingNodes > 0
+                        && (double) remainingEdges / remainingNodes > passDensity) {
+                    passDensity = (double) remainingEdges / remainingNodes;
+                    passBest = i + 1;
+                }
+            }
+            passDensities[pass] = passDensity;
+            if (pass == 0 || passDensity > bestDensity) {
+                bestDensity = passDensity;
+                bestNodes = new ArrayList<>();
+                for (int i = passBest; i < n; i++) {
+                    bestNodes.add(graph.node(order[i]));
                 }
-            } else {
-                return flow;
             }
         }
+
+        int maxLoad = 0;
+        for (int load : loads) {
+            maxLoad = Math.max(maxLoad, load);
+        }
+        return new DenseSubgraph<>(bestNodes, bestDensity, passDensities,
+                (double) maxLoad / iterations);
     }
-    
+
+    private static void bucketInsert(int[] head, int[] next, int[] prev, int v, int key) {
+        next[v] = head[key];
+        prev[v] = -1;
+        if (head[key] != -1) { prev[head[key]] = v; }
+        head[key] = v;
+    }
+
+    private static void bucketRemove(int[] head, int[] next, int[] prev, int v, int key) {
+        if (prev[v] != -1) {
+            next[prev[v]] = next[v];
+        } else {
+            head[key] = next[v];
+        }
+        if (next[v] != -1) { prev[next[v]] = prev[v]; }
+    }
+
     /**
-     * Finds all maximal cliques with size at least {@code minSize} in the given graph
-     * containing the specified node.
+     * Returns the betweenness centrality of every node in the given graph. See
+     * {@link #betweenness(CompactGraph)}.
      * @param g The graph.
-     * @param v The node that is included in all returned maximal cliques.
-     * @param minSize The minimum size of a maximal clique that is returned. This will be set
-     * to 3 if the given value is less than 3.
-     * @return A list of maximal cliques in the graph that contain the specified node, sorted
-     * in descending order by their size, where each clique is represented as a list of nodes.
-     * This method uses the Bron-Kerbosch algorithm and pivoting.
+     * @return A map from each node to its betweenness centrality.
      */
-    public static <V> List<List<V>> maximalCliquesContaining(Graph<V> g, V v, int minSize) {
-    	minSize = Math.max(minSize, 3);
-    	
-    	// create a copy of the subgraph induced on v and its neighbors
-    	Map<V, List<V>> subgraph = new HashMap<>();
-    	subgraph.put(v, new ArrayList<>());
-    	List<V> curr = subgraph.get(v);
-    	for (V neighbor : g.adjList.get(v)) {
-    		subgraph.put(neighbor, new ArrayList<>());
-    		curr.add(neighbor);
-    		subgraph.get(neighbor).add(v);
-    	}
-    	for (V a : subgraph.get(v)) {
-    		for (V b : g.adjList.get(a)) {
-    			if (subgraph.containsKey(b)) {
-	    			if (!subgraph.get(a).contains(b)) { subgraph.get(a).add(b); }
-	    			if (!subgraph.get(b).contains(a)) { subgraph.get(b).add(a); }
-    			}
-    		}
-    	}
-    	
-    	// TESTING SECTION
-    	
-    	int numEdges = 0;
-        for (List<V> l : subgraph.values()) {
-            numEdges += l.size();
-        }
-        numEdges /= 2;
-    	System.out.println("Induced subgraph nodes: " + subgraph.size());
-    	System.out.println("Induced subgraph edges: " + numEdges);
-    	
-    	// END OF TESTING SECTION
-    	
-    	List<List<V>> maxCliques = new ArrayList<>();
-    	BronKerboschVertexOrdering(subgraph, maxCliques);
-    	List<List<V>> ans = new ArrayList<>();
-    	for (List<V> clique : maxCliques) {
-            if (clique.size() >= minSize) {
-                ans.add(new ArrayList<>(clique));
-            }
-        }
-    	maxCliques.sort((l1, l2) -> l2.size() - l1.size());
-    	return maxCliques;
+    public static <V> Map<V, Double> betweenness(Graph<V> g) {
+        return betweenness(new CompactGraph<>(g));
     }
 
     /**
-     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
-     * them in descending order of their size. Note: this method may take a very long time to
-     * run. If possible, use {@link maximalCliquesContaining} instead.
-     * @param minSize The minimum size of a maximal clique that is returned. This will be set
-     * to 3 if the given value is less than 3.
-     * @return A list of maximal cliques in the graph sorted in descending order by their
-     * size, where each clique is represented as a list of nodes.
-     * This method uses the Bron-Kerbosch algorithm with vertex ordering and pivoting.
+     * Returns the betweenness centrality of every node in the given graph: the sum, over all
+     * pairs of other nodes s and t, of the fraction of shortest s-t paths that pass through
+     * the node. People with a high betweenness are the bridges between friend circles. This
+     * runs one breadth first search per node, in parallel, so it takes O(nm / threads) time;
+     * for a large graph, see {@link #approximateBetweenness(CompactGraph, int, long)}.
+     * @param g The graph.
+     * @return A map from each node to its betweenness centrality.
      */
-    public static <V> List<List<V>> allMaximalCliques(Graph<V> graph, int minSize) {
-    	minSize = Math.max(minSize, 3);
-        
-    	List<List<V>> allMaxCliques = new ArrayList<>();
-        BronKerboschVertexOrdering(graph.adjList, allMaxCliques);
-        List<List<V>> ans = new ArrayList<>();
-        for (List<V> clique : allMaxCliques) {
-            if (clique.size() >= minSize) {
-                ans.add(new ArrayList<>(clique));
-            }
+    public static <V> Map<V, Double> betweenness(CompactGraph<V> g) {
+        int[] sources = new int[g.numNodes()];
+        for (int u = 0; u < sources.length; u++) {
+            sources[u] = u;
         }
-        ans.sort((l1, l2) -> l2.size() - l1.size());
-        return ans;
+        // every pair is counted once from each end
+        return toNodeMap(g, Betweenness.dependencies(g, sources), 0.5);
     }
-    
+
     /**
-     * Finds the maximum cliques in the graph specified by {@code adjList}
-     * @param adjList The adjacency list for the graph.
-     * @param ans The {@code List} to store the results in.
-     * @param R Parameter for the Bron Kerbosch algorithm
-     * @param P Parameter for the Bron Kerbosch algorithm
-     * @param X Parameter for the Bron Kerbosch algorithm
-     * This method implements the BronKerbosch2 algorithm given at
-     * <https://en.wikipedia.org/wiki/Bron%E2%80%93Kerbosch_algorithm>
-     */
-    private static <V> void BronKerboschPivoting(Map<V, List<V>> adjList, List<List<V>> ans,
-            Set<V> R, Set<V> P, Set<V> X) {
-        if (P.isEmpty() && X.isEmpty()) {
-            ans.add(new ArrayList<>(R));
-            return;
-        }
-        V pivot;
-        if (!P.isEmpty()) {
-            pivot = P.iterator().next();
-        } else {
-            pivot = X.iterator().next();
-        }
-        Set<V> pivotNeighbors = new HashSet<>(adjList.get(pivot));
-        Set<V> PCopy = new HashSet<>(P);
-        for (V v : PCopy) {
-            if (pivotNeighbors.contains(v)) { continue; }
-            
-            R.add(v);
-            Set<V> vNeighbors = new HashSet<>(adjList.get(v));
-            Set<V> PPrime = new HashSet<>(P);
-            PPrime.retainAll(vNeighbors);
-            Set<V> XPrime = new HashSet<>(X);
-            XPrime.retainAll(vNeighbors);
-            
-            BronKerboschPivoting(adjList, ans, R, PPrime, XPrime);
-            R.remove(v);
-            P.remove(v);
-            X.add(v);
-        }
+     * Estimates the betweenness centrality of every node in the given graph. See
+     * {@link #approximateBetweenness(CompactGraph, int, long)}.
+     * @param g The graph.
+     * @param numSamples The number of sources to search from.
+     * @param seed The seed used to choose the sources.
+     * @return A map from each node to its estimated betweenness centrality.
+     */
+    public static <V> Map<V, Double> approximateBetweenness(Graph<V> g, int numSamples,
+            long seed) {
+        return approximateBetweenness(new CompactGraph<>(g), numSamples, seed);
     }
-    
+
     /**
-     * Finds the maximum cliques in the graph specified by {@code adjList}
-     * @param adjList The adjacency lists for the graph.
-     * @param ans The {@code List} to store the results in.
-     * This method implements the BronKerbosch3 algorithm given at
-     * <https://en.wikipedia.org/wiki/Bron%E2%80%93Kerbosch_algorithm>
-     */
-    private static <V> void BronKerboschVertexOrdering(Map<V, List<V>> adjList, List<List<V>> ans) {
-        Set<V> P = new HashSet<>(adjList.keySet());
-        Set<V> R = new HashSet<>();
-        Set<V> X = new HashSet<>();
-        List<NodeIntPair<V>> degeneracyOrdering = new ArrayList<>();
-        for (Map.Entry<V, List<V>> e : adjList.entrySet()) {
-            degeneracyOrdering.add(new NodeIntPair<>(e.getKey(), e.getValue().size()));
-        }
-        degeneracyOrdering.sort((p1, p2) -> p1.val - p2.val);
-        for (NodeIntPair<V> p : degeneracyOrdering) {
-            V v = p.node;
-            
-            R.add(v);
-            Set<V> vNeighbors = new HashSet<>(adjList.get(v));
-            Set<V> PPrime = new HashSet<>(P);
-            PPrime.retainAll(vNeighbors);
-            Set<V> XPrime = new HashSet<>(X);
-            XPrime.retainAll(vNeighbors);
-            
-            BronKerboschPivoting(adjList, ans, R, PPrime, XPrime);
-            R.remove(v);
-            P.remove(v);
-            X.add(v);
+     * Estimates the betweenness centrality of every node in the given graph by searching only
+     * from {@code numSamples} sources chosen uniformly at random, and scaling the dependencies
+     * on each node by {@code n / numSamples} (Brandes and Pich,
+     * https://doi.org/10.1142/S0218127407018403). The estimates are unbiased, and the error
+     * relative to the largest betweenness shrinks as 1 / sqrt(numSamples), so a few thousand
+     * samples are enough to find the nodes with the highest betweenness, in O(numSamples * m /
+     * threads) time.
+     * @param g The graph.
+     * @param numSamples The number of sources to search from. If it is at least the number of
+     * nodes, the result is exact.
+     * @param seed The seed used to choose the sources.
+     * @return A map from each node to its estimated betweenness centrality.
+     */
+    public static <V> Map<V, Double> approximateBetweenness(CompactGraph<V> g, int numSamples,
+            long seed) {
+        int n = g.numNodes();
+        if (numSamples >= n) { return betweenness(g); }
+        if (numSamples <= 0) {
+            throw new IllegalArgumentException("numSamples must be positive: " + numSamples);
         }
-    }
-    
-    private static <V> Map<V, List<DoubleFlowEdge<V>>> toFlowNetwork(Graph<V> g) {
-        Map<V, List<DoubleFlowEdge<V>>> network = new HashMap<>();
-        for (V u : g.adjList.keySet()) {
-            network.put(u, new ArrayList<>());
+
+        // the first numSamples entries of a partial Fisher-Yates shuffle
+        int[] ids = new int[n];
+        for (int u = 0; u < n; u++) {
+            ids[u] = u;
         }
-        for (Map.Entry<V, List<V>> e : g.adjList.entrySet()) {
-            V u = e.getKey();
-            List<DoubleFlowEdge<V>> neighbors = network.get(u);
-            for (V v : e.getValue()) {
-                neighbors.add(new DoubleFlowEdge<>(u, v, 1, 0));
-            }
+        Random random = new Random(seed);
+        for (int i = 0; i < numSamples; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
         }
-        return network;
+        double[] dependencies = Betweenness.dependencies(g, Arrays.copyOf(ids, numSamples));
+        return toNodeMap(g, dependencies, 0.5 * n / numSamples);
     }
-    
+
+    /**
+     * Returns the PageRank of every node in the given graph. See
+     * {@link #pageRank(CompactGraph, double, double)}.
+     * @param g The graph.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param tolerance The computation stops when the L1 distance between two successive
+     * rank vectors is less than this, e.g. 1e-9.
+     * @return A map from each node to its PageRank.
+     */
+    public static <V> Map<V, Double> pageRank(Graph<V> g, double damping, double tolerance) {
+        return pageRank(new CompactGraph<>(g), damping, tolerance);
+    }
+
     /**
-     * Useful for assigning int values to nodes in a Graph.
-     * to edges.
-     * @author roger
-     * @param <V> The type of the nodes of the graph.
+     * Returns the PageRank of every node in the given graph: the probability that a random
+     * surfer is at the node, if at each step the surfer follows a random edge with probability
+     * {@code damping} and otherwise jumps to a uniformly random node. It is computed by power
+     * iteration, with each sweep over the edges run in parallel.
+     * @param g The graph.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param tolerance The computation stops when the L1 distance between two successive
+     * rank vectors is less than this, e.g. 1e-9.
+     * @return A map from each node to its PageRank. The ranks add up to 1.
+     */
+    public static <V> Map<V, Double> pageRank(CompactGraph<V> g, double damping,
+            double tolerance) {
+        return toNodeMap(g, PageRank.powerIteration(g, -1, damping, tolerance), 1);
+    }
+
+    /**
+     * Returns the PageRank of every node personalized to u. See
+     * {@link #personalizedPageRank(CompactGraph, Object, double, double)}.
+     * @param g The graph.
+     * @param u The node that the surfer jumps back to.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param tolerance The computation stops when the L1 distance between two successive
+     * rank vectors is less than this, e.g. 1e-9.
+     * @return A map from each node to its PageRank personalized to u.
+     */
+    public static <V> Map<V, Double> personalizedPageRank(Graph<V> g, V u, double damping,
+            double tolerance) {
+        return personalizedPageRank(new CompactGraph<>(g), u, damping, tolerance);
+    }
+
+    /**
+     * Returns the PageRank of every node personalized to u: the same as PageRank, except that
+     * the surfer always jumps back to u. A high score means that a node is close to u through
+     * many short paths, which makes it a better friend suggestion than the number of mutual
+     * friends alone. It is computed by power iteration over the whole graph; to score only
+     * the nodes near u, see
+     * {@link #localPersonalizedPageRank(CompactGraph, Object, double, double)}.
+     * @param g The graph.
+     * @param u The node that the surfer jumps back to.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param tolerance The computation stops when the L1 distance between two successive
+     * rank vectors is less than this, e.g. 1e-9.
+     * @return A map from each node to its PageRank personalized to u. The ranks add up to 1.
+     */
+    public static <V> Map<V, Double> personalizedPageRank(CompactGraph<V> g, V u,
+            double damping, double tolerance) {
+        return toNodeMap(g, PageRank.powerIteration(g, g.id(u), damping, tolerance), 1);
+    }
+
+    /**
+     * Approximates the PageRank of the nodes near u, personalized to u. See
+     * {@link #localPersonalizedPageRank(CompactGraph, Object, double, double)}.
+     * @param g The graph.
+     * @param u The node that the surfer jumps back to.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param epsilon The maximum error per neighbor of a node, e.g. 1e-6.
+     * @return A map from each node with a nonzero estimate to its estimate.
+     */
+    public static <V> Map<V, Double> localPersonalizedPageRank(Graph<V> g, V u,
+            double damping, double epsilon) {
+        return localPersonalizedPageRank(new CompactGraph<>(g), u, damping, epsilon);
+    }
+
+    /**
+     * Approximates the PageRank of the nodes near u, personalized to u, by pushing probability
+     * mass out from u (Andersen, Chung and Lang), without a pass over the whole graph. The
+     * number of pushes is at most {@code 1 / ((1 - damping) * epsilon)} however large the
+     * graph is, so a query takes milliseconds. The estimate of each node v is at most the
+     * exact value, and less by at most {@code epsilon * degree(v)}.
+     * @param g The graph.
+     * @param u The node that the surfer jumps back to.
+     * @param damping The probability of following an edge rather than jumping, usually 0.85.
+     * @param epsilon The maximum error per neighbor of a node, e.g. 1e-6.
+     * @return A map from each node with a nonzero estimate to its estimate.
      */
-    private static class NodeIntPair<V> {
-        public V node;
-        public int val;
-        public NodeIntPair(V node, int val) {
-            this.node = node;
-            this.val = val;
+    public static <V> Map<V, Double> localPersonalizedPageRank(CompactGraph<V> g, V u,
+            double damping, double epsilon) {
+        double[] estimates = new double[g.numNodes()];
+        int[] touched = new int[g.numNodes()];
+        int numTouched = PageRank.push(g, g.id(u), damping, epsilon, estimates, touched);
+        Map<V, Double> ans = new HashMap<>();
+        for (int i = 0; i < numTouched; i++) {
+            int v = touched[i];
+            if (estimates[v] > 0) { ans.put(g.node(v), estimates[v]); }
         }
+        return ans;
+    }
+
+    /**
+     * Returns a map from each node of g to {@code scale * values[id of the node]}.
+     */
+    private static <V> Map<V, Double> toNodeMap(CompactGraph<V> g, double[] values,
+            double scale) {
+        Map<V, Double> ans = new HashMap<>();
+        for (int u = 0; u < values.length; u++) {
+            ans.put(g.node(u), scale * values[u]);
+        }
+        return ans;
+    }
+
+    /**
+     * Counts the triangles of the given graph, with the support of every edge and the
+     * clustering coefficients. See {@link TriangleStats}.
+     * @param g The graph.
+     * @return The triangle statistics of the graph.
+     */
+    public static <V> TriangleStats<V> triangleStats(Graph<V> g) {
+        return new TriangleStats<>(new CompactGraph<>(g));
     }
     
     /**
-     * Represents a directed edge from {@code node1} to {@code node2} in a graph with
-     * floating point flows.
-     * @param <V> The type of node in the graph.
+     * Partitions the given graph into communities with the Louvain method. See
+     * {@link Louvain}.
+     * @param g The graph.
+     * @return The partition, with the modularity and the communities of every level.
+     */
+    public static <V> Louvain<V> louvain(Graph<V> g) {
+        return new Louvain<>(new CompactGraph<>(g));
+    }
+
+    /**
+     * Partitions the given graph into communities with the Louvain method. See
+     * {@link Louvain}.
+     * @param g The graph.
+     * @return The partition, with the modularity and the communities of every level.
+     */
+    public static <V> Louvain<V> louvain(CompactGraph<V> g) {
+        return new Louvain<>(g);
+    }
+
+    /**
+     * Partitions the given graph into communities by label propagation. See
+     * {@link #labelPropagation(CompactGraph, long)}.
+     * @param g The graph.
+     * @param seed The seed of the random order in which the nodes are visited.
+     * @return The communities, in descending order of size.
+     */
+    public static <V> List<List<V>> labelPropagation(Graph<V> g, long seed) {
+        return labelPropagation(new CompactGraph<>(g), seed);
+    }
+
+    /**
+     * Partitions the given graph into communities by asynchronous label propagation (Raghavan
+     * et al., https://arxiv.org/abs/0709.2938). Every node starts with its own label, then the
+     * nodes are visited in a random order, and each takes the label that is most common among
+     * its neighbors, keeping its own label if that is one of the most common and otherwise
+     * breaking ties at random. Each node sees the labels its neighbors took earlier in the
+     * same sweep, and the sweeps stop when no label changes. Each sweep takes O(n + m) time and
+     * only a few sweeps are needed, but the result depends on the order, and it is usually
+     * less accurate than {@link #louvain(CompactGraph)}.
+     * @param g The graph.
+     * @param seed The seed of the random order in which the nodes are visited.
+     * @return The communities, in descending order of size.
+     */
+    public static <V> List<List<V>> labelPropagation(CompactGraph<V> g, long seed) {
+        int n = g.numNodes();
+        Random random = new Random(seed);
+        int[] label = new int[n];
+        int[] order = new int[n];
+        for (int u = 0; u < n; u++) {
+            label[u] = u;
+            order[u] = u;
+        }
+        int[] counts = new int[n];
+        int[] touched = new int[n];
+        boolean changed = true;
+        for (int sweep = 0; sweep < MAX_LABEL_PROPAGATION_SWEEPS && changed; sweep++) {
+            changed = false;
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+            for (int u : order) {
+                int numTouched = 0;
+                int maxCount = 0;
+                for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                    int l = label[g.targets[i]];
+                    if (counts[l] == 0) { touched[numTouched++] = l; }
+                    maxCount = Math.max(maxCount, ++counts[l]);
+                }
+                if (numTouched > 0 && counts[label[u]] < maxCount) {
+                    // choose uniformly among the most common labels
+                    int numTies = 0;
+                    for (int t = 0; t < numTouched; t++) {
+                        if (counts[touched[t]] == maxCount && random.nextInt(++numTies) == 0) {
+                            label[u] = touched[t];
+                        }
+                    }
+                    changed = true;
+                }
+                for (int t = 0; t < numTouched; t++) {
+                    counts[touched[t]] = 0;
+                }
+            }
+        }
+        return Louvain.groups(g, label);
+    }
+
+    /**
+     * Returns the connected components of the given graph. See
+     * {@link #connectedComponents(CompactGraph)}.
+     * @param g The graph.
+     * @return The connected components, in descending order of size.
+     */
+    public static <V> List<List<V>> connectedComponents(Graph<V> g) {
+        return connectedComponents(new CompactGraph<>(g));
+    }
+
+    /**
+     * Returns the connected components of the given graph. The edges are added to a
+     * {@link UnionFind} in parallel, split by their first endpoint, so this takes almost linear
+     * time. To find the components while the graph is being loaded instead, call
+     * {@link UnionFind#union} with the edges as they are read, from any number of threads;
+     * it adds the nodes the first time it sees them.
+     * @param g The graph.
+     * @return The connected components, in descending order of size.
+     */
+    public static <V> List<List<V>> connectedComponents(CompactGraph<V> g) {
+        UnionFind<V> components = new UnionFind<>(g.nodes());
+        ForkJoinPool.commonPool().invoke(new UnionTask(g, components, 0, g.numNodes()));
+        return components.sets();
+    }
+
+    /**
+     * Returns the articulation points of the given graph. See
+     * {@link #articulationPoints(CompactGraph)}.
+     * @param g The graph.
+     * @return The articulation points.
+     */
+    public static <V> List<V> articulationPoints(Graph<V> g) {
+        return articulationPoints(new CompactGraph<>(g));
+    }
+
+    /**
+     * Returns the articulation points of the given graph: the nodes whose removal would split
+     * their connected component, such as the only friend of someone. They are found with an
+     * iterative version of Tarjan's depth first search, in O(n + m) time, so deep graphs do
+     * not overflow the stack.
+     * @param g The graph.
+     * @return The articulation points, in order of id.
+     */
+    public static <V> List<V> articulationPoints(CompactGraph<V> g) {
+        boolean[] articulation = new Biconnectivity(g).articulation;
+        List<V> ans = new ArrayList<>();
+        for (int u = 0; u < articulation.length; u++) {
+            if (articulation[u]) { ans.add(g.node(u)); }
+        }
+        return ans;
+    }
+
+    /**
+     * Returns the bridges of the given graph. See {@link #bridges(CompactGraph)}.
+     * @param g The graph.
+     * @return The bridges, each as a list of its two endpoints.
+     */
+    public static <V> List<List<V>> bridges(Graph<V> g) {
+        return bridges(new CompactGraph<>(g));
+    }
+
+    /**
+     * Returns the bridges of the given graph: the edges whose removal would split their
+     * connected component. They are found in the same depth first search as
+     * {@link #articulationPoints(CompactGraph)}.
+     * @param g The graph.
+     * @return The bridges, each as a list of its two endpoints, in order of id.
+     */
+    public static <V> List<List<V>> bridges(CompactGraph<V> g) {
+        boolean[] bridge = new Biconnectivity(g).bridge;
+        List<List<V>> ans = new ArrayList<>();
+        for (int u = 0; u < g.numNodes(); u++) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                if (bridge[i] && u < g.targets[i]) {
+                    ans.add(Arrays.asList(g.node(u), g.node(g.targets[i])));
+                }
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Builds a MinHash index of the neighbor sets of the given graph. See
+     * {@link MinHashIndex}.
+     * @param g The graph.
+     * @param numHashes The length of each signature, e.g. 128.
+     * @param numBands The number of bands, which must divide numHashes, e.g. 32.
+     * @param seed The seed of the hash functions.
+     * @return The index.
+     */
+    public static <V> MinHashIndex<V> minHashIndex(Graph<V> g, int numHashes, int numBands,
+            long seed) {
+        return new MinHashIndex<>(new CompactGraph<>(g), numHashes, numBands, seed);
+    }
+
+    /**
+     * Computes the trussness of every edge in the given graph. See
+     * {@link TrussDecomposition}.
+     * @param g The graph.
+     * @return The truss decomposition of the graph.
      */
-    static class DoubleFlowEdge<V> {
-        public V node1;
-        public V node2;
-        public double capacity;
-        public double flow;
-        public DoubleFlowEdge(V node1, V node2, double capacity, double flow) {
-            this.node1 = node1;
-            this.node2 = node2;
-            this.capacity = capacity;
-            this.flow = flow;
+    public static <V> TrussDecomposition<V> trussDecomposition(Graph<V> g) {
+        return new TrussDecomposition<>(new CompactGraph<>(g));
+    }
+
+    /**
+     * Computes the trussness of every edge in the given graph. See
+     * {@link TrussDecomposition}.
+     * @param g The graph.
+     * @return The truss decomposition of the graph.
+     */
+    public static <V> TrussDecomposition<V> trussDecomposition(CompactGraph<V> g) {
+        return new TrussDecomposition<>(g);
+    }
+
+    /**
+     * Returns the k-truss of the given graph: the largest subgraph in which every edge is in
+     * at least k - 2 triangles.
+     * @param g The graph.
+     * @param k The minimum trussness.
+     * @return The k-truss of the graph, which is empty if no edge has trussness at least k.
+     */
+    public static <V> Graph<V> kTruss(Graph<V> g, int k) {
+        return new TrussDecomposition<>(new CompactGraph<>(g)).kTruss(k);
+    }
+
+    /**
+     * Returns the core number of every node in the given graph. The core number of a node is
+     * the largest k such that the node is in the k-core of the graph (the largest subgraph in
+     * which every node has at least k neighbors).
+     * @param g The graph.
+     * @return A map from each node to its core number.
+     */
+    public static <V> Map<V, Integer> coreNumbers(Graph<V> g) {
+        return coreNumbers(new CompactGraph<>(g));
+    }
+
+    /**
+     * Returns the core number of every node in the given graph. The core number of a node is
+     * the largest k such that the node is in the k-core of the graph (the largest subgraph in
+     * which every node has at least k neighbors).
+     * @param g The graph.
+     * @return A map from each node to its core number.
+     */
+    public static <V> Map<V, Integer> coreNumbers(CompactGraph<V> g) {
+        int[] coreNumbers = coreDecomposition(g, new int[g.numNodes()]);
+        Map<V, Integer> ans = new HashMap<>();
+        for (int i = 0; i < coreNumbers.length; i++) {
+            ans.put(g.node(i), coreNumbers[i]);
+        }
+        return ans;
+    }
+
+    /**
+     * Returns the k-core of the given graph: the largest subgraph in which every node has at
+     * least k neighbors.
+     * @param g The graph.
+     * @param k The minimum degree.
+     * @return The k-core of the graph, which is empty if no node has core number at least k.
+     */
+    public static <V> Graph<V> kCore(Graph<V> g, int k) {
+        return kCore(new CompactGraph<>(g), k);
+    }
+
+    /**
+     * Returns the k-core of the given graph: the largest subgraph in which every node has at
+     * least k neighbors.
+     * @param g The graph.
+     * @param k The minimum degree.
+     * @return The k-core of the graph, which is empty if no node has core number at least k.
+     */
+    public static <V> Graph<V> kCore(CompactGraph<V> g, int k) {
+        int[] coreNumbers = coreDecomposition(g, new int[g.numNodes()]);
+        Graph<V> core = new Graph<>();
+        for (int u = 0; u < coreNumbers.length; u++) {
+            if (coreNumbers[u] < k) { continue; }
+            core.addNode(g.node(u));
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int w = g.targets[i];
+                if (w > u && coreNumbers[w] >= k) { core.addEdge(g.node(u), g.node(w)); }
+            }
+        }
+        return core;
+    }
+
+    /**
+     * Computes the core number of every node with the O(n + m) bucket algorithm of Batagelj
+     * and Zaversnik (https://arxiv.org/abs/cs/0310049): nodes are kept in an array sorted by
+     * their current degree, and removing the node of smallest degree moves each of its
+     * neighbors down one bucket in O(1).
+     * @param g The graph.
+     * @param ordering An array of length {@code g.numNodes()} that is filled with the order in
+     * which the nodes were removed, which is a degeneracy ordering of the graph.
+     * @return The core number of each node, indexed by node id.
+     */
+    static int[] coreDecomposition(CompactGraph<?> g, int[] ordering) {
+        int n = g.numNodes();
+        int[] degrees = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            degrees[v] = g.degree(v);
+            maxDegree = Math.max(maxDegree, degrees[v]);
+        }
+
+        // bucketStart[d] is the index in ordering of the first node with degree d
+        int[] bucketStart = new int[maxDegree + 1];
+        for (int v = 0; v < n; v++) {
+            bucketStart[degrees[v]]++;
+        }
+        int start = 0;
+        for (int d = 0; d <= maxDegree; d++) {
+            int size = bucketStart[d];
+            bucketStart[d] = start;
+            start += size;
+        }
+        int[] position = new int[n];
+        for (int v = 0; v < n; v++) {
+            position[v] = bucketStart[degrees[v]]++;
+            ordering[position[v]] = v;
+        }
+        for (int d = maxDegree; d > 0; d--) {
+            bucketStart[d] = bucketStart[d - 1];
+        }
+        bucketStart[0] = 0;
+
+        for (int i = 0; i < n; i++) {
+            int v = ordering[i];
+            for (int j = g.offsets[v]; j < g.offsets[v + 1]; j++) {
+                int u = g.targets[j];
+                if (degrees[u] > degrees[v]) {
+                    // swap u with the first node in its bucket, then move the bucket boundary
+                    // past it so that u is now in the bucket below
+                    int du = degrees[u];
+                    int pu = position[u];
+                    int pw = bucketStart[du];
+                    int w = ordering[pw];
+                    if (u != w) {
+                        position[u] = pw;
+                        ordering[pu] = w;
+                        position[w] = pu;
+                        ordering[pw] = u;
+                    }
+                    bucketStart[du]++;
+                    degrees[u]--;
+                }
+            }
+        }
+        return degrees;
+    }
+
+    /**
+     * Finds all maximal cliques with size at least {@code minSize} in the given graph
+     * containing the specified node.
+     * @param g The graph.
+     * @param v The node that is included in all returned maximal cliques.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph that contain the specified node, sorted
+     * in descending order by their size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm and pivoting.
+     */
+    public static <V> List<List<V>> maximalCliquesContaining(Graph<V> g, V v, int minSize) {
+        return maximalCliquesContaining(g, v, minSize, false);
+    }
+
+    /**
+     * Finds all maximal cliques with size at least {@code minSize} in the given graph
+     * containing the specified node.
+     * @param g The graph.
+     * @param v The node that is included in all returned maximal cliques.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @param parallel If true, the search is split into tasks that run on the common
+     * {@link ForkJoinPool}. The result is the same as in sequential mode.
+     * @return A list of maximal cliques in the graph that contain the specified node, sorted
+     * in descending order by their size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm and pivoting.
+     */
+    public static <V> List<List<V>> maximalCliquesContaining(Graph<V> g, V v, int minSize,
+            boolean parallel) {
+        return maximalCliquesContaining(new CompactGraph<>(g), v, minSize, parallel);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size. Note: this method may take a very long time to
+     * run. If possible, use {@link maximalCliquesContaining} instead.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm with vertex ordering and pivoting.
+     */
+    public static <V> List<List<V>> allMaximalCliques(Graph<V> graph, int minSize) {
+        return allMaximalCliques(new CompactGraph<>(graph), minSize, false);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size. Note: this method may take a very long time to
+     * run. If possible, use {@link maximalCliquesContaining} instead.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @param parallel If true, the search is split into tasks that run on the common
+     * {@link ForkJoinPool}. The result is the same as in sequential mode.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm with vertex ordering and pivoting.
+     */
+    public static <V> List<List<V>> allMaximalCliques(Graph<V> graph, int minSize,
+            boolean parallel) {
+        return allMaximalCliques(new CompactGraph<>(graph), minSize, parallel);
+    }
+
+    /**
+     * Finds all maximal cliques with size at least {@code minSize} in the given graph
+     * containing the specified node. The subgraph induced on the neighbors of v is small and
+     * dense, so it is copied into an adjacency bit matrix and searched with bitset operations.
+     * @param g The graph.
+     * @param v The node that is included in all returned maximal cliques.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph that contain the specified node, sorted
+     * in descending order by their size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm and pivoting.
+     */
+    public static <V> List<List<V>> maximalCliquesContaining(CompactGraph<V> g, V v, int minSize) {
+        return maximalCliquesContaining(g, v, minSize, false);
+    }
+
+    /**
+     * Finds all maximal cliques with size at least {@code minSize} in the given graph
+     * containing the specified node. The subgraph induced on the neighbors of v is small and
+     * dense, so it is copied into an adjacency bit matrix and searched with bitset operations.
+     * @param g The graph.
+     * @param v The node that is included in all returned maximal cliques.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @param parallel If true, the search is split into tasks that run on the common
+     * {@link ForkJoinPool}. The result is the same as in sequential mode.
+     * @return A list of maximal cliques in the graph that contain the specified node, sorted
+     * in descending order by their size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm and pivoting.
+     */
+    public static <V> List<List<V>> maximalCliquesContaining(CompactGraph<V> g, V v, int minSize,
+            boolean parallel) {
+        minSize = Math.max(minSize, 3);
+        List<int[]> maxCliques =
+                CliqueSubproblem.containing(g, g.id(v), minSize).collect(minSize, parallel);
+        return toSortedCliques(g, maxCliques, minSize);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size. Note: this method may take a very long time to
+     * run. If possible, use {@link maximalCliquesContaining} instead.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm with vertex ordering and pivoting.
+     */
+    public static <V> List<List<V>> allMaximalCliques(CompactGraph<V> g, int minSize) {
+        return allMaximalCliques(g, minSize, false);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size. Note: this method may take a very long time to
+     * run. If possible, use {@link maximalCliquesContaining} instead.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @param parallel If true, the outer loop over the vertex ordering and any large branches
+     * of the search are split into tasks that run on the common {@link ForkJoinPool}. The
+     * result is the same as in sequential mode.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     * This method uses the Bron-Kerbosch algorithm with vertex ordering and pivoting.
+     */
+    public static <V> List<List<V>> allMaximalCliques(CompactGraph<V> g, int minSize,
+            boolean parallel) {
+        minSize = Math.max(minSize, 3);
+        int n = g.numNodes();
+        int[] ordering = new int[n];
+        int[] rank = cliqueSearchRanks(g, minSize, ordering);
+
+        List<int[]> maxCliques = new ArrayList<>();
+        if (parallel) {
+            List<List<int[]>> perVertex = new ArrayList<>(Collections.nCopies(n, null));
+            ForkJoinPool.commonPool().invoke(
+                    new OuterLoopTask(g, ordering, rank, minSize, perVertex, 0, n));
+            for (List<int[]> cliques : perVertex) {
+                maxCliques.addAll(cliques);
+            }
+        } else {
+            forEachMaximalClique(g, ordering, rank, minSize, maxCliques::add);
+        }
+        return toSortedCliques(g, maxCliques, minSize);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size, for a graph in which only some nodes have
+     * complete information. See {@link #allMaximalCliques(CompactGraph, Collection, int)}.
+     * @param g The graph.
+     * @param completeInfoNodes The nodes whose neighbors are all known.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     */
+    public static <V> List<List<V>> allMaximalCliques(Graph<V> g, Collection<V> completeInfoNodes,
+            int minSize) {
+        return allMaximalCliques(new CompactGraph<>(g), completeInfoNodes, minSize);
+    }
+
+    /**
+     * Finds all maximal cliques in the given graph whose size is at least minSize and returns
+     * them in descending order of their size, for a graph in which only some nodes have
+     * complete information. In a friends graph built from .friends files, the complete-info
+     * nodes X are the owners of the files, and every other node (in Y) was only seen as a
+     * friend of someone in X, so no edge between two Y nodes is ever observed and every clique
+     * contains at most one Y node. The result is the same as
+     * {@link #allMaximalCliques(CompactGraph, int)}, but the search only recurses through X:
+     * <ul>
+     * <li>A maximal clique with no Y node is a maximal clique of the subgraph induced on X that
+     * no Y node is adjacent to all of.</li>
+     * <li>A maximal clique with a Y node y is y together with a maximal clique of the subgraph
+     * induced on the neighbors of y, which are all in X.</li>
+     * </ul>
+     * @param g The graph.
+     * @param completeInfoNodes The nodes whose neighbors are all known.
+     * @param minSize The minimum size of a maximal clique that is returned. This will be set
+     * to 3 if the given value is less than 3.
+     * @return A list of maximal cliques in the graph sorted in descending order by their
+     * size, where each clique is represented as a list of nodes.
+     * @throws IllegalArgumentException if the graph has an edge between two nodes that are
+     * not in {@code completeInfoNodes}.
+     */
+    public static <V> List<List<V>> allMaximalCliques(CompactGraph<V> g,
+            Collection<V> completeInfoNodes, int minSize) {
+        int size = Math.max(minSize, 3);
+        int n = g.numNodes();
+        boolean[] complete = new boolean[n];
+        for (V v : completeInfoNodes) {
+            int u = g.id(v);
+            if (u >= 0) { complete[u] = true; }
+        }
+        for (int u = 0; u < n; u++) {
+            if (complete[u]) { continue; }
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                if (!complete[g.targets[i]]) {
+                    throw new IllegalArgumentException("Edge between two incomplete-info nodes: "
+                            + g.node(u) + ", " + g.node(g.targets[i]));
+                }
+            }
+        }
+
+        // for each node in X, the nodes in Y that are adjacent to it and could be adjacent to
+        // every node of a clique of size minSize
+        int[] yOffsets = new int[n + 1];
+        int[] yTargets = new int[g.targets.length];
+        for (int u = 0; u < n; u++) {
+            yOffsets[u + 1] = yOffsets[u];
+            if (!complete[u]) { continue; }
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int y = g.targets[i];
+                if (!complete[y] && g.degree(y) >= size) { yTargets[yOffsets[u + 1]++] = y; }
+            }
+        }
+
+        int[] ordering = new int[n];
+        int[] rank = cliqueSearchRanks(g, size, ordering);
+        for (int u = 0; u < n; u++) {
+            if (!complete[u]) { rank[u] = -1; }
+        }
+        List<int[]> maxCliques = new ArrayList<>();
+        forEachMaximalClique(g, ordering, rank, size, clique -> {
+            if (!hasCommonNeighbor(g, clique, yOffsets, yTargets)) { maxCliques.add(clique); }
+            return true;
+        });
+        for (int y = 0; y < n; y++) {
+            if (!complete[y] && g.degree(y) >= size - 1) {
+                CliqueSubproblem.containing(g, y, size).forEach(size, maxCliques::add);
+            }
+        }
+        return toSortedCliques(g, maxCliques, size);
+    }
+
+    /**
+     * Returns true if some node of {@code candidates} is adjacent to every node in the clique.
+     * @param candidates The candidates for each node u are
+     * {@code candidateTargets[candidateOffsets[u]..candidateOffsets[u + 1])}.
+     */
+    private static boolean hasCommonNeighbor(CompactGraph<?> g, int[] clique,
+            int[] candidateOffsets, int[] candidateTargets) {
+        int u = clique[0];
+        for (int c : clique) {
+            if (candidateOffsets[c + 1] - candidateOffsets[c]
+                    < candidateOffsets[u + 1] - candidateOffsets[u]) {
+                u = c;
+            }
+        }
+        for (int i = candidateOffsets[u]; i < candidateOffsets[u + 1]; i++) {
+            int y = candidateTargets[i];
+            if (g.degree(y) < clique.length) { continue; }
+            boolean adjacentToAll = true;
+            for (int j = 0; j < clique.length && adjacentToAll; j++) {
+                adjacentToAll = clique[j] == u || g.hasEdge(y, clique[j]);
+            }
+            if (adjacentToAll) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Passes every maximal clique of size at least minSize in the given graph to
+     * {@code action} as soon as it is found, without storing the cliques. Branches of the
+     * search that cannot reach minSize nodes (|R| + |P| < minSize) are not searched, so smaller
+     * cliques are never generated. The cliques are found with the same algorithm as
+     * {@link #allMaximalCliques(CompactGraph, int)}, but they are not sorted.
+     * @param g The graph.
+     * @param minSize The minimum size of a maximal clique that is reported. Unlike
+     * {@link #allMaximalCliques(CompactGraph, int)}, this may be 1 or 2.
+     * @param action Receives each clique as an array of node ids (see {@link CompactGraph#node})
+     * that it may keep, and returns false to stop the search or true to continue it.
+     * @return false if {@code action} stopped the search, true otherwise.
+     */
+    public static <V> boolean forEachMaximalClique(CompactGraph<V> g, int minSize,
+            Predicate<int[]> action) {
+        int[] ordering = new int[g.numNodes()];
+        int[] rank = cliqueSearchRanks(g, minSize, ordering);
+        return forEachMaximalClique(g, ordering, rank, minSize, action);
+    }
+
+    private static boolean forEachMaximalClique(CompactGraph<?> g, int[] ordering, int[] rank,
+            int minSize, Predicate<int[]> action) {
+        for (int v : ordering) {
+            CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, v, rank);
+            if (subproblem != null && !subproblem.forEach(minSize, action)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the vertex ordering for the outer loop of the BronKerbosch3 algorithm, which is
+     * a degeneracy ordering of the graph. A clique of size minSize only contains nodes with core
+     * number at least minSize - 1, so every other node is pruned before the search starts.
+     * @param g The graph.
+     * @param minSize The minimum size of the cliques that are searched for.
+     * @param ordering An array of length {@code g.numNodes()} that is filled with a degeneracy
+     * ordering of the graph.
+     * @return The position of each node in {@code ordering}, or -1 for pruned nodes.
+     */
+    static int[] cliqueSearchRanks(CompactGraph<?> g, int minSize, int[] ordering) {
+        int[] coreNumbers = coreDecomposition(g, ordering);
+        int[] rank = new int[g.numNodes()];
+        for (int i = 0; i < ordering.length; i++) {
+            int v = ordering[i];
+            rank[v] = coreNumbers[v] >= minSize - 1 ? i : -1;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns a maximum clique (a clique with the largest possible number of nodes) in the
+     * given graph. See {@link #topKCliques(CompactGraph, int)}.
+     * @param g The graph.
+     * @return A maximum clique in the graph, or an empty list if the graph has no nodes.
+     */
+    public static <V> List<V> maximumClique(Graph<V> g) {
+        return maximumClique(new CompactGraph<>(g));
+    }
+
+    /**
+     * Returns a maximum clique (a clique with the largest possible number of nodes) in the
+     * given graph. See {@link #topKCliques(CompactGraph, int)}.
+     * @param g The graph.
+     * @return A maximum clique in the graph, or an empty list if the graph has no nodes.
+     */
+    public static <V> List<V> maximumClique(CompactGraph<V> g) {
+        List<List<V>> cliques = topKCliques(g, 1);
+        return cliques.isEmpty() ? new ArrayList<>() : cliques.get(0);
+    }
+
+    /**
+     * Returns the k largest maximal cliques in the given graph. See
+     * {@link #topKCliques(CompactGraph, int)}.
+     * @param g The graph.
+     * @param k The number of cliques to return.
+     * @return The k largest maximal cliques in the graph (or all of them, if there are fewer
+     * than k), sorted in descending order by their size.
+     */
+    public static <V> List<List<V>> topKCliques(Graph<V> g, int k) {
+        return topKCliques(new CompactGraph<>(g), k);
+    }
+
+    /**
+     * Returns the k largest maximal cliques in the given graph, without enumerating the
+     * smaller ones. This is a branch and bound search that cuts every branch of the
+     * Bron-Kerbosch algorithm whose candidates can not form a clique larger than the k-th
+     * largest clique found so far, bounded by a greedy coloring of the candidates (as in
+     * Tomita's MCQ/MCS algorithms). Cliques of the same size are chosen arbitrarily.
+     * @param g The graph.
+     * @param k The number of cliques to return.
+     * @return The k largest maximal cliques in the graph (or all of them, if there are fewer
+     * than k), sorted in descending order by their size.
+     */
+    public static <V> List<List<V>> topKCliques(CompactGraph<V> g, int k) {
+        LargestCliques search = new LargestCliques(k);
+        search.searchAll(g);
+        return toSortedCliques(g, search.results(), 0);
+    }
+
+    /**
+     * Returns a maximum clique among the cliques containing the specified node. See
+     * {@link #topKCliques(CompactGraph, int)}.
+     * @param g The graph.
+     * @param v A node in the graph.
+     * @return A largest clique that contains v.
+     */
+    public static <V> List<V> maximumCliqueContaining(Graph<V> g, V v) {
+        return maximumCliqueContaining(new CompactGraph<>(g), v);
+    }
+
+    /**
+     * Returns a maximum clique among the cliques containing the specified node. See
+     * {@link #topKCliques(CompactGraph, int)}.
+     * @param g The graph.
+     * @param v A node in the graph.
+     * @return A largest clique that contains v.
+     */
+    public static <V> List<V> maximumCliqueContaining(CompactGraph<V> g, V v) {
+        return topKCliquesContaining(g, v, 1).get(0);
+    }
+
+    /**
+     * Returns the k largest maximal cliques containing the specified node. See
+     * {@link #topKCliquesContaining(CompactGraph, Object, int)}.
+     * @param g The graph.
+     * @param v A node in the graph.
+     * @param k The number of cliques to return.
+     * @return The k largest maximal cliques that contain v (or all of them, if there are fewer
+     * than k), sorted in descending order by their size.
+     */
+    public static <V> List<List<V>> topKCliquesContaining(Graph<V> g, V v, int k) {
+        return topKCliquesContaining(new CompactGraph<>(g), v, k);
+    }
+
+    /**
+     * Returns the k largest maximal cliques containing the specified node. This runs the
+     * branch and bound search of {@link #topKCliques(CompactGraph, int)} on the subgraph
+     * induced on the neighbors of v, as in {@link #maximalCliquesContaining(CompactGraph,
+     * Object, int)}.
+     * @param g The graph.
+     * @param v A node in the graph.
+     * @param k The number of cliques to return.
+     * @return The k largest maximal cliques that contain v (or all of them, if there are fewer
+     * than k), sorted in descending order by their size.
+     */
+    public static <V> List<List<V>> topKCliquesContaining(CompactGraph<V> g, V v, int k) {
+        LargestCliques search = new LargestCliques(k);
+        search.search(CliqueSubproblem.containing(g, g.id(v), 1));
+        return toSortedCliques(g, search.results(), 0);
+    }
+
+    /**
+     * Counts the cliques of every size in the given graph. See
+     * {@link #cliqueCountsBySize(CompactGraph)}.
+     * @param g The graph.
+     * @return An array whose element k is the number of cliques with k nodes.
+     */
+    public static <V> BigInteger[] cliqueCountsBySize(Graph<V> g) {
+        return cliqueCountsBySize(new CompactGraph<>(g));
+    }
+
+    /**
+     * Counts the cliques of every size in the given graph, where a k-clique is any set of k
+     * nodes that are all neighbors of each other (so, unlike the other clique functions, the
+     * cliques do not have to be maximal). This uses the succinct clique tree of the Pivoter
+     * algorithm: the search runs from every node v over its neighbors that come after v in a
+     * degeneracy ordering, and branches on a pivot like the Bron-Kerbosch search, but each
+     * leaf stands for all of the cliques made of its held nodes and any subset of its pivot
+     * nodes. Only the number of leaves with each number of held and pivot nodes is recorded,
+     * so the cliques are never enumerated. The counts grow exponentially with the size of the
+     * largest clique, so they are returned as BigIntegers.
+     * @param g The graph.
+     * @return An array whose element k is the number of cliques with k nodes, for k from 0 (the
+     * empty clique) to the size of the largest clique in the graph, which is the length of the
+     * array minus 1.
+     */
+    public static <V> BigInteger[] cliqueCountsBySize(CompactGraph<V> g) {
+        int n = g.numNodes();
+        int[] ordering = new int[n];
+        int[] rank = cliqueSearchRanks(g, 0, ordering);
+        int maxCliqueSize = maxCliqueSizeBound(g);
+
+        // leaves[h][p] is the number of leaves with h held nodes and p pivot nodes
+        long[][] leaves = new long[maxCliqueSize + 1][maxCliqueSize + 1];
+        BitSetGraph.CliqueTreeLeaf countLeaf = (held, hSize, pivots, pSize) ->
+                leaves[hSize][pSize]++;
+        for (int v = 0; v < n; v++) {
+            CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, v, rank);
+            if (subproblem == null) {
+                leaves[1][0]++;
+            } else {
+                subproblem.cliqueTree(countLeaf);
+            }
+        }
+
+        BigInteger[] counts = new BigInteger[maxCliqueSize + 1];
+        Arrays.fill(counts, BigInteger.ZERO);
+        counts[0] = BigInteger.ONE;
+        BigInteger[][] binomial = binomialCoefficients(maxCliqueSize);
+        int largest = 0;
+        for (int h = 1; h <= maxCliqueSize; h++) {
+            for (int p = 0; h + p <= maxCliqueSize; p++) {
+                if (leaves[h][p] == 0) { continue; }
+                largest = Math.max(largest, h + p);
+                BigInteger numLeaves = BigInteger.valueOf(leaves[h][p]);
+                for (int j = 0; j <= p; j++) {
+                    counts[h + j] = counts[h + j].add(numLeaves.multiply(binomial[p][j]));
+                }
+            }
+        }
+        return Arrays.copyOf(counts, largest + 1);
+    }
+
+    /**
+     * Counts the cliques of size k that contain each node in the given graph. See
+     * {@link #cliqueCountsByNode(CompactGraph, int)}.
+     * @param g The graph.
+     * @param k The size of the cliques to count.
+     * @return A mapping from each node to the number of cliques of size k that contain it.
+     */
+    public static <V> Map<V, BigInteger> cliqueCountsByNode(Graph<V> g, int k) {
+        return cliqueCountsByNode(new CompactGraph<>(g), k);
+    }
+
+    /**
+     * Counts the cliques of size k that contain each node in the given graph, using the
+     * succinct clique tree of {@link #cliqueCountsBySize(CompactGraph)}. A leaf with h held
+     * and p pivot nodes is in C(p, k - h) cliques of size k, each of which contains all of
+     * the held nodes, and each pivot node is in C(p - 1, k - h - 1) of them.
+     * @param g The graph.
+     * @param k The size of the cliques to count.
+     * @return A mapping from each node to the number of cliques of size k that contain it.
+     */
+    public static <V> Map<V, BigInteger> cliqueCountsByNode(CompactGraph<V> g, int k) {
+        int n = g.numNodes();
+        BigInteger[] counts = new BigInteger[n];
+        Arrays.fill(counts, BigInteger.ZERO);
+        if (k >= 1) {
+            int[] ordering = new int[n];
+            int[] rank = cliqueSearchRanks(g, k, ordering);
+            BigInteger[][] binomial = binomialCoefficients(maxCliqueSizeBound(g));
+            for (int v = 0; v < n; v++) {
+                CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, v, rank);
+                if (subproblem == null) {
+                    if (k == 1) { counts[v] = BigInteger.ONE; }
+                    continue;
+                }
+                int[] members = subproblem.members;
+                subproblem.cliqueTree((held, hSize, pivots, pSize) -> {
+                    int rest = k - hSize;
+                    if (rest < 0 || rest > pSize) { return; }
+                    BigInteger heldCount = binomial[pSize][rest];
+                    counts[held[0]] = counts[held[0]].add(heldCount);
+                    for (int i = 1; i < hSize; i++) {
+                        int u = members[held[i]];
+                        counts[u] = counts[u].add(heldCount);
+                    }
+                    if (rest == 0) { return; }
+                    BigInteger pivotCount = binomial[pSize - 1][rest - 1];
+                    for (int i = 0; i < pSize; i++) {
+                        int u = members[pivots[i]];
+                        counts[u] = counts[u].add(pivotCount);
+                    }
+                });
+            }
+        }
+        Map<V, BigInteger> ans = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            ans.put(g.node(v), counts[v]);
+        }
+        return ans;
+    }
+
+    /**
+     * Returns an upper bound on the size of the largest clique in the graph: the largest core
+     * number plus 1.
+     */
+    private static int maxCliqueSizeBound(CompactGraph<?> g) {
+        int bound = 0;
+        for (int c : coreDecomposition(g, new int[g.numNodes()])) {
+            bound = Math.max(bound, c + 1);
+        }
+        return bound;
+    }
+
+    /**
+     * Returns Pascal's triangle up to row n, where {@code binomial[p][j]} is C(p, j).
+     */
+    private static BigInteger[][] binomialCoefficients(int n) {
+        BigInteger[][] binomial = new BigInteger[n + 1][];
+        for (int p = 0; p <= n; p++) {
+            binomial[p] = new BigInteger[p + 1];
+            binomial[p][0] = BigInteger.ONE;
+            binomial[p][p] = BigInteger.ONE;
+            for (int j = 1; j < p; j++) {
+                binomial[p][j] = binomial[p - 1][j - 1].add(binomial[p - 1][j]);
+            }
+        }
+        return binomial;
+    }
+
+    /**
+     * Maps the cliques of size at least minSize back to nodes and sorts them in descending
+     * order by their size.
+     */
+    private static <V> List<List<V>> toSortedCliques(CompactGraph<V> g, List<int[]> cliques,
+            int minSize) {
+        List<List<V>> ans = new ArrayList<>();
+        for (int[] clique : cliques) {
+            if (clique.length >= minSize) {
+                ans.add(g.toNodes(clique, clique.length));
+            }
+        }
+        ans.sort((l1, l2) -> l2.size() - l1.size());
+        return ans;
+    }
+
+    /**
+     * Writes the intersection of the sorted ranges {@code a[aFrom..aTo)} and
+     * {@code b[bFrom..bTo)} to {@code out} starting at {@code outFrom}.
+     * @param skipA If not null, the elements {@code a[i]} with {@code skipA[i - aFrom]} set
+     * are left out of the intersection.
+     * @return The index in {@code out} after the last element written.
+     */
+    private static int intersectSorted(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo,
+            boolean[] skipA, int[] out, int outFrom) {
+        int i = aFrom;
+        int j = bFrom;
+        int k = outFrom;
+        while (i < aTo && j < bTo) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (skipA == null || !skipA[i - aFrom]) { out[k++] = a[i]; }
+                i++;
+                j++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Runs the outer loop of the BronKerbosch3 algorithm over {@code ordering[from..to)},
+     * splitting the range in half until it is small. The cliques found for each node are
+     * stored in that node's slot of {@code perVertex}, which no other task writes, so no
+     * locking is needed and the results can be concatenated in the sequential order
+     * afterwards.
+     */
+    private static class OuterLoopTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int LEAF_SIZE = 16;
+
+        private final CompactGraph<?> g;
+        private final int[] ordering;
+        private final int[] rank;
+        private final int minSize;
+        private final List<List<int[]>> perVertex;
+        private final int from;
+        private final int to;
+
+        OuterLoopTask(CompactGraph<?> g, int[] ordering, int[] rank, int minSize,
+                List<List<int[]>> perVertex, int from, int to) {
+            this.g = g;
+            this.ordering = ordering;
+            this.rank = rank;
+            this.minSize = minSize;
+            this.perVertex = perVertex;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, ordering[i], rank);
+                    perVertex.set(i, subproblem == null
+                            ? new ArrayList<>()
+                            : subproblem.collect(minSize, true));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new OuterLoopTask(g, ordering, rank, minSize, perVertex, from, mid),
+                    new OuterLoopTask(g, ordering, rank, minSize, perVertex, mid, to));
+        }
+    }
+
+    /**
+     * Adds the edges of the nodes in {@code [from, to)} to a {@link UnionFind} whose ids are
+     * the ids of g, splitting the range in half until it is small.
+     */
+    private static class UnionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int LEAF_SIZE = 1024;
+
+        private final CompactGraph<?> g;
+        private final UnionFind<?> components;
+        private final int from;
+        private final int to;
+
+        UnionTask(CompactGraph<?> g, UnionFind<?> components, int from, int to) {
+            this.g = g;
+            this.components = components;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int u = from; u < to; u++) {
+                    for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                        if (u < g.targets[i]) { components.union(u, g.targets[i]); }
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new UnionTask(g, components, from, mid),
+                    new UnionTask(g, components, mid, to));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A branch and bound search for the k largest maximal cliques of a {@link CompactGraph}, which
+ * never enumerates the (usually far more numerous) smaller maximal cliques. The search is the
+ * Bron-Kerbosch algorithm with pivoting, run on {@link CliqueSubproblem}s, where every branch is
+ * bounded by a greedy coloring of its candidate set P (as in Tomita's MCQ/MCS algorithms): once
+ * k cliques have been found, a branch is cut unless |R| + (number of colors of P) is larger than
+ * the size of the smallest of them. Candidates are tried in descending order of color, and
+ * before each one the same bound is applied to the colors that are left, i.e. its own color
+ * plus any higher colors held only by candidates that were skipped for neighboring the pivot.
+ * Since that bound never increases, the rest of the loop is cut as soon as it fails. Large
+ * cliques tend to be found early, so the bound tightens quickly.
+ * @author roger
+ *
+ */
+class LargestCliques {
+
+    private final int k;
+
+    // the k largest cliques found so far, with the smallest at the head
+    private final PriorityQueue<int[]> heap;
+
+    /**
+     * Creates an empty search for the k largest maximal cliques.
+     * @param k The number of cliques to keep.
+     */
+    LargestCliques(int k) {
+        if (k < 1) { throw new IllegalArgumentException("k must be positive"); }
+        this.k = k;
+        this.heap = new PriorityQueue<>(k, (c1, c2) -> c1.length - c2.length);
+    }
+
+    /**
+     * Searches every sub-problem of the outer loop of the BronKerbosch3 algorithm on g. The
+     * sub-problems are searched in descending order of the core number of their node, since a
+     * clique containing v has at most (core number of v) + 1 nodes; this finds the large
+     * cliques first and stops as soon as no remaining node can beat the k-th largest.
+     * @param g The graph.
+     */
+    void searchAll(CompactGraph<?> g) {
+        int n = g.numNodes();
+        int[] ordering = new int[n];
+        int[] coreNumbers = Graphs.coreDecomposition(g, ordering);
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[ordering[i]] = i;
+        }
+
+        // ordering is sorted by core number, so walk it backwards
+        for (int i = n - 1; i >= 0; i--) {
+            int v = ordering[i];
+            if (coreNumbers[v] + 1 <= threshold()) { break; }
+            CliqueSubproblem subproblem = CliqueSubproblem.inOrdering(g, v, rank);
+            if (subproblem != null) { search(subproblem); }
+        }
+    }
+
+    /**
+     * Searches a single sub-problem, e.g. the cliques containing one node.
+     * @param subproblem The sub-problem.
+     */
+    void search(CliqueSubproblem subproblem) {
+        int[] R = new int[subproblem.subgraph.n + 1];
+        R[0] = subproblem.v;
+        search(subproblem, R, 1, subproblem.P, subproblem.X);
+    }
+
+    /**
+     * Returns the cliques found, as arrays of node ids, in descending order of size.
+     * @return The (at most k) largest maximal cliques found.
+     */
+    List<int[]> results() {
+        List<int[]> ans = new ArrayList<>(heap);
+        ans.sort((c1, c2) -> c2.length - c1.length);
+        return ans;
+    }
+
+    /**
+     * Returns the size that a clique must exceed to be one of the k largest found so far.
+     */
+    private int threshold() {
+        return heap.size() < k ? 0 : heap.peek().length;
+    }
+
+    private void search(CliqueSubproblem subproblem, int[] R, int rSize, long[] P, long[] X) {
+        BitSetGraph h = subproblem.subgraph;
+        if (BitSetGraph.isEmpty(P)) {
+            if (BitSetGraph.isEmpty(X) && rSize > threshold()) {
+                int[] clique = Arrays.copyOf(R, rSize);
+                for (int i = 1; i < rSize; i++) {
+                    clique[i] = subproblem.members[clique[i]];
+                }
+                heap.add(clique);
+                if (heap.size() > k) { heap.poll(); }
+            }
+            return;
+        }
+        int pSize = BitSetGraph.cardinality(P);
+        if (rSize + pSize <= threshold()) { return; }
+        int[] order = new int[pSize];
+        int[] colors = new int[pSize];
+        if (rSize + h.colorSort(P, order, colors) <= threshold()) { return; }
+
+        // the candidates skipped because they neighbor the pivot stay in P, so the colors
+        // that only they have still count toward the bound of the later branches
+        int skippedColors = 0;
+        int lastSkippedColor = 0;
+        long[] pivotNeighbors = h.rows[h.choosePivot(P, X)];
+        for (int i = pSize - 1; i >= 0; i--) {
+            // P is now order[0..i] and the skipped candidates, which have at most colors[i]
+            // colors plus the skipped colors above colors[i]; this only shrinks as i does
+            int higherSkippedColors = skippedColors
+                    - (lastSkippedColor == colors[i] ? 1 : 0);
+            if (rSize + colors[i] + higherSkippedColors <= threshold()) { return; }
+            int v = order[i];
+            int w = v >>> 6;
+            if ((pivotNeighbors[w] & (1L << v)) != 0) {
+                if (colors[i] != lastSkippedColor) {
+                    skippedColors++;
+                    lastSkippedColor = colors[i];
+                }
+                continue;
+            }
+
+            long[] vNeighbors = h.rows[v];
+            long[] PPrime = new long[h.words];
+            long[] XPrime = new long[h.words];
+            for (int j = 0; j < h.words; j++) {
+                PPrime[j] = P[j] & vNeighbors[j];
+                XPrime[j] = X[j] & vNeighbors[j];
+            }
+            R[rSize] = v;
+            search(subproblem, R, rSize + 1, PPrime, XPrime);
+            P[w] &= ~(1L << v);
+            X[w] |= 1L << v;
+            if (rSize + BitSetGraph.cardinality(P) <= threshold()) { return; }
+        }
+    }
+}
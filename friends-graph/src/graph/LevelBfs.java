@@ -0,0 +1,118 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A level-synchronous breadth-first search over the int ids of a {@link CompactGraph}, from
+ * one or more sources at once. Each level is found with either a top-down step, which scans
+ * the neighbors of every node in the frontier, or a bottom-up step, which scans the neighbors
+ * of every unvisited node until it finds one in the frontier. Bottom-up steps are much cheaper
+ * for the few middle levels that hold most of a small-world graph such as a friends graph, so
+ * the search switches between the two as in the direction-optimizing BFS of Beamer et al.
+ * (https://doi.org/10.1109/SC.2012.50). The frontier is kept both as a list and as a bitset,
+ * so that a bottom-up step can test membership in O(1).
+ * @author roger
+ *
+ */
+class LevelBfs {
+
+    // switch to bottom-up when the frontier has more than 1/ALPHA of the edges of the
+    // unvisited nodes, and back to top-down when it has fewer than 1/BETA of the nodes
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    private final CompactGraph<?> g;
+
+    // the level of each node in the last search, or -1 if it was not reached
+    final int[] level;
+
+    LevelBfs(CompactGraph<?> g) {
+        this.g = g;
+        this.level = new int[g.numNodes()];
+    }
+
+    /**
+     * Runs the search from the given sources, up to maxDepth levels. Afterwards
+     * {@link #level} holds the distance from the nearest source to every node within maxDepth
+     * of a source, and -1 for every other node.
+     * @param sources The ids of the sources, which are the nodes of level 0. Duplicates are
+     * ignored.
+     * @param maxDepth The last level to find.
+     * @return The ids of the nodes of each level, from 0 to maxDepth or to the last level
+     * that is not empty, whichever comes first.
+     */
+    List<int[]> run(int[] sources, int maxDepth) {
+        int n = g.numNodes();
+        Arrays.fill(level, -1);
+        long[] frontierBits = new long[(n + 63) >>> 6];
+        int[] frontier = new int[n];
+        int[] next = new int[n];
+        int frontierSize = 0;
+
+        // the number of edge endpoints at unvisited nodes
+        long unvisitedEdges = g.targets.length;
+        for (int s : sources) {
+            if (level[s] != -1) { continue; }
+            level[s] = 0;
+            frontier[frontierSize++] = s;
+            unvisitedEdges -= g.degree(s);
+        }
+        List<int[]> levels = new ArrayList<>();
+        levels.add(Arrays.copyOf(frontier, frontierSize));
+
+        boolean bottomUp = false;
+        for (int depth = 1; depth <= maxDepth && frontierSize > 0; depth++) {
+            long frontierEdges = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                frontierEdges += g.degree(frontier[i]);
+            }
+            if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < n / BETA) {
+                bottomUp = false;
+            }
+
+            int nextSize = 0;
+            if (bottomUp) {
+                for (int i = 0; i < frontierSize; i++) {
+                    frontierBits[frontier[i] >>> 6] |= 1L << frontier[i];
+                }
+                for (int v = 0; v < n; v++) {
+                    if (level[v] != -1) { continue; }
+                    for (int i = g.offsets[v]; i < g.offsets[v + 1]; i++) {
+                        int w = g.targets[i];
+                        if ((frontierBits[w >>> 6] & (1L << w)) != 0) {
+                            level[v] = depth;
+                            next[nextSize++] = v;
+                            break;
+                        }
+                    }
+                }
+                for (int i = 0; i < frontierSize; i++) {
+                    frontierBits[frontier[i] >>> 6] = 0;
+                }
+            } else {
+                for (int i = 0; i < frontierSize; i++) {
+                    int u = frontier[i];
+                    for (int j = g.offsets[u]; j < g.offsets[u + 1]; j++) {
+                        int w = g.targets[j];
+                        if (level[w] == -1) {
+                            level[w] = depth;
+                            next[nextSize++] = w;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < nextSize; i++) {
+                unvisitedEdges -= g.degree(next[i]);
+            }
+            int[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+            frontierSize = nextSize;
+            if (frontierSize > 0) { levels.add(Arrays.copyOf(frontier, frontierSize)); }
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,424 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Partitions a {@link CompactGraph} into communities with the Louvain method (Blondel et al.,
+ * https://arxiv.org/abs/0803.0476), which greedily maximizes the modularity of the partition.
+ * Each level starts with every node in its own community and repeatedly moves nodes to the
+ * neighboring community that increases the modularity the most; the communities are then
+ * merged into single nodes of a weighted graph, which is partitioned in the same way at the
+ * next level, until no two communities are merged.
+ * <p>
+ * The moves of a round are chosen in parallel, one worker per thread with its own sparse
+ * accumulator, against a snapshot of the communities, and then all applied at once (as in
+ * Lu et al., https://doi.org/10.1016/j.parco.2015.03.003). To keep two nodes from swapping
+ * communities forever, a node that is alone in its community only moves into another such
+ * community if that community has the smaller id. Moving every node at once can still lower
+ * the modularity (on a complete bipartite graph, every node joins the other side), so such a
+ * round is undone and redone sequentially, moving one node at a time against the current
+ * communities as in the original method; the level ends when that does not increase the
+ * modularity either. The graphs of every level are stored in CSR form with int ids and long
+ * weights.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class Louvain<V> {
+
+    private static final int MAX_ROUNDS = 100;
+    private static final double MIN_GAIN = 1e-7;
+
+    private final CompactGraph<V> g;
+
+    // membership.get(l)[u] is the community of node u of g after level l
+    private final List<int[]> membership = new ArrayList<>();
+    private final List<Double> modularity = new ArrayList<>();
+
+    /**
+     * Partitions the given graph, in parallel on the common {@link ForkJoinPool}.
+     * @param g The graph.
+     */
+    public Louvain(CompactGraph<V> g) {
+        this.g = g;
+        int n = g.numNodes();
+        int[] community = new int[n];
+        for (int u = 0; u < n; u++) {
+            community[u] = u;
+        }
+        long[] weights = new long[g.targets.length];
+        Arrays.fill(weights, 1);
+        Level level = new Level(n, g.offsets, g.targets, weights, new long[n]);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < ForkJoinPool.getCommonPoolParallelism(); i++) {
+            workers.add(new Worker(n));
+        }
+
+        while (true) {
+            int[] moved = level.localMoving(workers);
+            int numCommunities = renumber(moved);
+            if (numCommunities == level.n) { break; }
+            for (int u = 0; u < n; u++) {
+                community[u] = moved[community[u]];
+            }
+            level = level.aggregate(moved, numCommunities);
+            membership.add(community.clone());
+            modularity.add(level.modularity());
+        }
+        if (membership.isEmpty()) {
+            membership.add(community);
+            modularity.add(level.modularity());
+        }
+    }
+
+    /**
+     * Returns the number of levels of the partition. Each level merges some of the
+     * communities of the level before it.
+     * @return The number of levels, which is at least 1.
+     */
+    public int numLevels() {
+        return membership.size();
+    }
+
+    /**
+     * Returns the modularity of the partition at the given level.
+     * @param level A level, from 0 to {@code numLevels() - 1}.
+     * @return The modularity of the communities at that level.
+     */
+    public double modularity(int level) {
+        return modularity.get(level);
+    }
+
+    /**
+     * Returns the modularity of the final partition.
+     * @return The modularity of {@link #communities()}.
+     */
+    public double modularity() {
+        return modularity(numLevels() - 1);
+    }
+
+    /**
+     * Returns the communities at the given level.
+     * @param level A level, from 0 to {@code numLevels() - 1}.
+     * @return The communities, in descending order of size.
+     */
+    public List<List<V>> communities(int level) {
+        return groups(g, membership.get(level));
+    }
+
+    /**
+     * Returns the communities of the final partition, which has the highest modularity.
+     * @return The communities, in descending order of size.
+     */
+    public List<List<V>> communities() {
+        return communities(numLevels() - 1);
+    }
+
+    /**
+     * Renumbers the communities in the given array to {@code 0, 1, ...}, keeping their order.
+     * @return The number of communities.
+     */
+    private static int renumber(int[] community) {
+        int[] id = new int[community.length];
+        Arrays.fill(id, -1);
+        int count = 0;
+        for (int u = 0; u < community.length; u++) {
+            int c = community[u];
+            if (id[c] < 0) { id[c] = count++; }
+            community[u] = id[c];
+        }
+        return count;
+    }
+
+    /**
+     * Groups the nodes of g by their label.
+     * @param g The graph.
+     * @param label The label of every node, indexed by node id.
+     * @return The groups of nodes with the same label, in descending order of size.
+     */
+    static <V> List<List<V>> groups(CompactGraph<V> g, int[] label) {
+        List<List<V>> groups = new ArrayList<>();
+        int[] index = new int[g.numNodes()];
+        Arrays.fill(index, -1);
+        for (int u = 0; u < g.numNodes(); u++) {
+            if (index[label[u]] < 0) {
+                index[label[u]] = groups.size();
+                groups.add(new ArrayList<>());
+            }
+            groups.get(index[label[u]]).add(g.node(u));
+        }
+        groups.sort((a, b) -> b.size() - a.size());
+        return groups;
+    }
+
+    /**
+     * The weighted graph of one level. Node u has an edge of weight {@code weights[i]} to
+     * {@code targets[i]} for every i in {@code [offsets[u], offsets[u + 1])}, and a self-loop
+     * of weight {@code selfLoops[u]}, the weight of the edges inside it.
+     */
+    private static class Level {
+        final int n;
+        final int[] offsets;
+        final int[] targets;
+        final long[] weights;
+        final long[] selfLoops;
+
+        // degrees[u] is the total weight of the edges of u, with its self-loop counted twice
+        final long[] degrees;
+        final double totalDegree;
+
+        Level(int n, int[] offsets, int[] targets, long[] weights, long[] selfLoops) {
+            this.n = n;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.selfLoops = selfLoops;
+            this.degrees = new long[n];
+            long total = 0;
+            for (int u = 0; u < n; u++) {
+                degrees[u] = 2 * selfLoops[u];
+                for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                    degrees[u] += weights[i];
+                }
+                total += degrees[u];
+            }
+            this.totalDegree = total;
+        }
+
+        /**
+         * Returns the modularity of the partition with every node in its own community.
+         */
+        double modularity() {
+            return modularity(identity(n));
+        }
+
+        /**
+         * Returns the modularity of the given partition of this level.
+         */
+        double modularity(int[] community) {
+            if (totalDegree == 0) { return 0; }
+            double[] inside = new double[n];
+            double[] total = new double[n];
+            for (int u = 0; u < n; u++) {
+                int c = community[u];
+                total[c] += degrees[u];
+                inside[c] += 2 * selfLoops[u];
+                for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                    if (community[targets[i]] == c) { inside[c] += weights[i]; }
+                }
+            }
+            double q = 0;
+            for (int c = 0; c < n; c++) {
+                q += inside[c] / totalDegree - (total[c] / totalDegree) * (total[c] / totalDegree);
+            }
+            return q;
+        }
+
+        /**
+         * Moves nodes between communities in parallel rounds until the modularity stops
+         * increasing.
+         * @return The community of every node.
+         */
+        int[] localMoving(List<Worker> workers) {
+            int[] community = identity(n);
+            long[] total = degrees.clone();
+            int[] size = new int[n];
+            Arrays.fill(size, 1);
+            int[] target = new int[n];
+            double q = modularity(community);
+            int chunk = (n + workers.size() - 1) / workers.size();
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                for (int w = 0; w < workers.size(); w++) {
+                    Worker worker = workers.get(w);
+                    worker.reinitialize();
+                    worker.set(this, community, total, size, target, Math.min(n, w * chunk),
+                            Math.min(n, (w + 1) * chunk));
+                }
+                ForkJoinTask.invokeAll(workers);
+
+                int[] next = target.clone();
+                double nextQ = modularity(next);
+                if (nextQ - q < MIN_GAIN) {
+                    next = community.clone();
+                    sequentialRound(workers.get(0), next, total.clone(), size.clone());
+                    nextQ = modularity(next);
+                    if (nextQ - q < MIN_GAIN) { break; }
+                }
+                community = next;
+                q = nextQ;
+                Arrays.fill(total, 0);
+                Arrays.fill(size, 0);
+                for (int u = 0; u < n; u++) {
+                    total[community[u]] += degrees[u];
+                    size[community[u]]++;
+                }
+            }
+            return community;
+        }
+
+        /**
+         * Moves the nodes one at a time, in order, to their best community, updating the
+         * given communities, totals and sizes after every move.
+         */
+        private void sequentialRound(Worker worker, int[] community, long[] total, int[] size) {
+            worker.set(this, community, total, size, null, 0, 0);
+            for (int u = 0; u < n; u++) {
+                int own = community[u];
+                int best = worker.bestCommunity(u, false);
+                if (best == own) { continue; }
+                total[own] -= degrees[u];
+                size[own]--;
+                total[best] += degrees[u];
+                size[best]++;
+                community[u] = best;
+            }
+        }
+
+        /**
+         * Returns the graph whose nodes are the communities of this level, where the weight
+         * of an edge is the total weight of the edges between the two communities.
+         */
+        Level aggregate(int[] community, int numCommunities) {
+            // members of each community, in CSR form
+            int[] memberOffsets = new int[numCommunities + 1];
+            for (int u = 0; u < n; u++) {
+                memberOffsets[community[u] + 1]++;
+            }
+            for (int c = 0; c < numCommunities; c++) {
+                memberOffsets[c + 1] += memberOffsets[c];
+            }
+            int[] members = new int[n];
+            int[] next = Arrays.copyOf(memberOffsets, numCommunities);
+            for (int u = 0; u < n; u++) {
+                members[next[community[u]]++] = u;
+            }
+
+            long[] accumulated = new long[numCommunities];
+            int[] touched = new int[numCommunities];
+            int[] newOffsets = new int[numCommunities + 1];
+            int[] newTargets = new int[targets.length];
+            long[] newWeights = new long[targets.length];
+            long[] newSelfLoops = new long[numCommunities];
+            int size = 0;
+            for (int c = 0; c < numCommunities; c++) {
+                int numTouched = 0;
+                long inside = 0;
+                for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                    int u = members[m];
+                    newSelfLoops[c] += selfLoops[u];
+                    for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                        int d = community[targets[i]];
+                        if (d == c) {
+                            // each edge inside c is seen from both of its endpoints
+                            inside += weights[i];
+                            continue;
+                        }
+                        if (accumulated[d] == 0) { touched[numTouched++] = d; }
+                        accumulated[d] += weights[i];
+                    }
+                }
+                newSelfLoops[c] += inside / 2;
+                Arrays.sort(touched, 0, numTouched);
+                for (int t = 0; t < numTouched; t++) {
+                    newTargets[size] = touched[t];
+                    newWeights[size++] = accumulated[touched[t]];
+                    accumulated[touched[t]] = 0;
+                }
+                newOffsets[c + 1] = size;
+            }
+            return new Level(numCommunities, newOffsets, Arrays.copyOf(newTargets, size),
+                    Arrays.copyOf(newWeights, size), newSelfLoops);
+        }
+
+        private static int[] identity(int n) {
+            int[] ids = new int[n];
+            for (int u = 0; u < n; u++) {
+                ids[u] = u;
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Chooses the best community of the nodes {@code [from, to)} of a level, with its own
+     * sparse accumulator of the weight from a node to each neighboring community.
+     */
+    private static class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] weightTo;
+        private final int[] touched;
+        private Level level;
+        private int[] community;
+        private long[] total;
+        private int[] size;
+        private int[] target;
+        private int from;
+        private int to;
+
+        Worker(int n) {
+            this.weightTo = new long[n];
+            this.touched = new int[n];
+        }
+
+        void set(Level level, int[] community, long[] total, int[] size, int[] target,
+                int from, int to) {
+            this.level = level;
+            this.community = community;
+            this.total = total;
+            this.size = size;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int u = from; u < to; u++) {
+                target[u] = bestCommunity(u, true);
+            }
+        }
+
+        /**
+         * Returns the community that node u should move to, which is its own community if no
+         * move increases the modularity. If the moves of all nodes are applied at once, a
+         * node that is alone only moves into another singleton with a smaller id.
+         */
+        int bestCommunity(int u, boolean synchronous) {
+            double m2 = level.totalDegree;
+            int own = community[u];
+            int numTouched = 0;
+            for (int i = level.offsets[u]; i < level.offsets[u + 1]; i++) {
+                int c = community[level.targets[i]];
+                if (weightTo[c] == 0) { touched[numTouched++] = c; }
+                weightTo[c] += level.weights[i];
+            }
+
+            // the gain of moving u into c, relative to leaving u on its own, is
+            // weightTo[c] - degree(u) * total[c] / m2, up to a constant factor
+            long k = level.degrees[u];
+            int best = own;
+            double bestGain = m2 == 0 ? 0 : weightTo[own] - k * (double) (total[own] - k) / m2;
+            for (int t = 0; t < numTouched; t++) {
+                int c = touched[t];
+                if (c == own) { continue; }
+                double gain = weightTo[c] - k * (double) total[c] / m2;
+                if (gain > bestGain || (gain == bestGain && best != own && c < best)) {
+                    best = c;
+                    bestGain = gain;
+                }
+            }
+            if (synchronous && best != own && size[own] == 1 && size[best] == 1 && best > own) {
+                best = own;
+            }
+            for (int t = 0; t < numTouched; t++) {
+                weightTo[touched[t]] = 0;
+            }
+            return best;
+        }
+    }
+}
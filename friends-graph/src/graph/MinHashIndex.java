@@ -0,0 +1,349 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds nodes of a {@link CompactGraph} with similar sets of neighbors, by the Jaccard
+ * similarity |N(u) & N(v)| / |N(u) | N(v)|, without comparing every pair of nodes.
+ * <p>
+ * Every node gets a MinHash signature (Broder, https://doi.org/10.1109/SEQUEN.1997.666900):
+ * for each of {@code numHashes} random hash functions, the smallest hash of a neighbor of
+ * the node. Two nodes have the same minimum for a hash function with probability equal to
+ * their Jaccard similarity, so the fraction of equal entries of their signatures estimates
+ * it. The signatures are computed in parallel, and stored in one int array.
+ * <p>
+ * For locality sensitive hashing, the signatures are cut into {@code numBands} bands of
+ * {@code r = numHashes / numBands} rows, and two nodes are candidates if all of the rows of
+ * some band are equal. A pair with similarity s becomes a candidate with probability
+ * {@code 1 - (1 - s^r)^numBands}, which jumps from near 0 to near 1 around
+ * {@code s = (1 / numBands)^(1 / r)}, so the bands should be chosen to put that point a bit
+ * below the similarities of interest. The hash of every band of every node is computed once,
+ * with the signatures, and each band is kept as an array of (hash of the band, node id) pairs
+ * packed into longs and sorted, so the nodes that share a band are adjacent, and the nodes
+ * that share a band with a given node are found by binary search.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class MinHashIndex<V> {
+
+    private static final int LEAF_SIZE = 1024;
+
+    private final CompactGraph<V> g;
+    private final int numHashes;
+    private final int numBands;
+    private final int rows;
+
+    // signatures[u * numHashes + i] is the smallest value of hash function i over N(u)
+    private final int[] signatures;
+
+    // bandHashes[u * numBands + b] is the hash of band b of the signature of u, with the low
+    // idBits bits cleared
+    private final long[] bandHashes;
+
+    // bands[b] holds, for every node u with neighbors, the hash of band b of u in the high
+    // bits and u in the low idBits bits, sorted
+    private final long[][] bands;
+    private final int idBits;
+    private final long idMask;
+
+    /**
+     * Computes the signatures of the nodes of the given graph and builds the bands, in
+     * parallel on the common {@link ForkJoinPool}.
+     * @param g The graph.
+     * @param numHashes The length of each signature. The standard error of an estimated
+     * similarity s is sqrt(s (1 - s) / numHashes).
+     * @param numBands The number of bands, which must divide numHashes.
+     * @param seed The seed of the hash functions.
+     * @throws ArithmeticException if the signatures of all of the nodes would not fit in one
+     * array.
+     */
+    public MinHashIndex(CompactGraph<V> g, int numHashes, int numBands, long seed) {
+        if (numHashes <= 0 || numBands <= 0 || numHashes % numBands != 0) {
+            throw new IllegalArgumentException("numBands must be positive and divide "
+                    + "numHashes: " + numBands + ", " + numHashes);
+        }
+        this.g = g;
+        this.numHashes = numHashes;
+        this.numBands = numBands;
+        this.rows = numHashes / numBands;
+        int n = g.numNodes();
+        this.idBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(n));
+        this.idMask = (1L << idBits) - 1;
+
+        long[] multipliers = new long[numHashes];
+        long[] offsets = new long[numHashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < numHashes; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            offsets[i] = random.nextLong();
+        }
+        this.signatures = new int[Math.multiplyExact(n, numHashes)];
+        this.bandHashes = new long[Math.multiplyExact(n, numBands)];
+        this.bands = new long[numBands][];
+        ForkJoinPool.commonPool().invoke(new SignatureTask(multipliers, offsets, 0, n));
+
+        for (int b = 0; b < numBands; b++) {
+            long[] band = new long[n];
+            int size = 0;
+            for (int u = 0; u < n; u++) {
+                if (g.degree(u) > 0) { band[size++] = bandHashes[u * numBands + b] | u; }
+            }
+            band = Arrays.copyOf(band, size);
+            Arrays.parallelSort(band);
+            bands[b] = band;
+        }
+    }
+
+    /**
+     * Estimates the Jaccard similarity of the neighbors of u and v from their signatures.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @return The fraction of equal entries in the signatures of u and v, or 0 if either has
+     * no neighbors.
+     * @throws IllegalArgumentException if u or v is not in the graph.
+     */
+    public double estimatedSimilarity(V u, V v) {
+        return estimatedSimilarity(id(u), id(v));
+    }
+
+    /**
+     * Returns the exact Jaccard similarity of the neighbors of u and v, by merging their
+     * sorted adjacency lists.
+     * @param u A node in the graph.
+     * @param v A node in the graph.
+     * @return |N(u) & N(v)| / |N(u) | N(v)|, or 0 if neither has neighbors.
+     * @throws IllegalArgumentException if u or v is not in the graph.
+     */
+    public double similarity(V u, V v) {
+        return similarity(id(u), id(v));
+    }
+
+    /**
+     * Returns the k nodes most similar to u among the candidates that share a band with u.
+     * @param u A node in the graph.
+     * @param k The maximum number of nodes to return.
+     * @param exact If true, the candidates are ranked by their exact similarity, which costs
+     * a merge of two adjacency lists per candidate; otherwise by their estimated similarity.
+     * @return The most similar nodes, in descending order of similarity.
+     * @throws IllegalArgumentException if u is not in the graph.
+     */
+    public List<V> mostSimilar(V u, int k, boolean exact) {
+        int a = id(u);
+        List<Integer> candidates = new ArrayList<>();
+        if (g.degree(a) > 0) {
+            boolean[] seen = new boolean[g.numNodes()];
+            seen[a] = true;
+            for (int b = 0; b < numBands; b++) {
+                long[] band = bands[b];
+                long key = bandHashes[a * numBands + b];
+                int i = Arrays.binarySearch(band, key);
+                for (i = i < 0 ? -i - 1 : i; i < band.length && (band[i] & ~idMask) == key; i++) {
+                    int v = (int) (band[i] & idMask);
+                    if (!seen[v]) {
+                        seen[v] = true;
+                        candidates.add(v);
+                    }
+                }
+            }
+        }
+        double[] scores = new double[g.numNodes()];
+        for (int v : candidates) {
+            scores[v] = exact ? similarity(a, v) : estimatedSimilarity(a, v);
+        }
+        candidates.sort((v, w) -> scores[v] != scores[w]
+                ? Double.compare(scores[w], scores[v]) : v - w);
+        List<V> ans = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, candidates.size()); i++) {
+            ans.add(g.node(candidates.get(i)));
+        }
+        return ans;
+    }
+
+    /**
+     * Returns the pairs of nodes that share a band and have similarity at least threshold.
+     * Each pair is reported once, by the first band that the two nodes share, and the bands
+     * are scanned in parallel.
+     * @param threshold The minimum similarity.
+     * @param exact If true, the candidate pairs are checked with their exact similarity;
+     * otherwise with their estimated similarity.
+     * @return The pairs, each as a list of two nodes.
+     */
+    public List<List<V>> similarPairs(double threshold, boolean exact) {
+        List<List<int[]>> perBand = new ArrayList<>();
+        List<PairsTask> tasks = new ArrayList<>();
+        for (int b = 0; b < numBands; b++) {
+            perBand.add(new ArrayList<>());
+            tasks.add(new PairsTask(b, threshold, exact, perBand.get(b)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        List<List<V>> ans = new ArrayList<>();
+        for (List<int[]> pairs : perBand) {
+            for (int[] pair : pairs) {
+                ans.add(Arrays.asList(g.node(pair[0]), g.node(pair[1])));
+            }
+        }
+        return ans;
+    }
+
+    private double estimatedSimilarity(int u, int v) {
+        if (g.degree(u) == 0 || g.degree(v) == 0) { return 0; }
+        int equal = 0;
+        for (int i = 0; i < numHashes; i++) {
+            if (signatures[u * numHashes + i] == signatures[v * numHashes + i]) { equal++; }
+        }
+        return (double) equal / numHashes;
+    }
+
+    private double similarity(int u, int v) {
+        int i = g.offsets[u];
+        int j = g.offsets[v];
+        int common = 0;
+        while (i < g.offsets[u + 1] && j < g.offsets[v + 1]) {
+            if (g.targets[i] < g.targets[j]) {
+                i++;
+            } else if (g.targets[i] > g.targets[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        int union = g.degree(u) + g.degree(v) - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    private int id(V v) {
+        int id = g.id(v);
+        if (id == -1) {
+            throw new IllegalArgumentException("Not a node: " + v);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the hash of band b of the signature of u, with the low idBits bits cleared. Two
+     * nodes whose bands hash the same but differ are only a false candidate, which the
+     * similarity check filters out.
+     */
+    private long bandHash(int u, int b) {
+        long h = b;
+        for (int i = b * rows; i < (b + 1) * rows; i++) {
+            h = mix(h * 31 + signatures[u * numHashes + i]);
+        }
+        return h & ~idMask;
+    }
+
+    /**
+     * Returns true if u and v are in the same bucket of a band before band b.
+     */
+    private boolean shareEarlierBand(int u, int v, int b) {
+        for (int c = 0; c < b; c++) {
+            if (bandHashes[u * numBands + c] == bandHashes[v * numBands + c]) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads every bit of x over the result.
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * Computes the signatures and band hashes of the nodes in {@code [from, to)}, splitting
+     * the range in half until it is small.
+     */
+    private class SignatureTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] multipliers;
+        private final long[] offsets;
+        private final int from;
+        private final int to;
+
+        SignatureTask(long[] multipliers, long[] offsets, int from, int to) {
+            this.multipliers = multipliers;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SignatureTask(multipliers, offsets, from, mid),
+                        new SignatureTask(multipliers, offsets, mid, to));
+                return;
+            }
+            for (int u = from; u < to; u++) {
+                int base = u * numHashes;
+                Arrays.fill(signatures, base, base + numHashes, Integer.MAX_VALUE);
+                for (int j = g.offsets[u]; j < g.offsets[u + 1]; j++) {
+                    long x = g.targets[j];
+                    for (int i = 0; i < numHashes; i++) {
+                        int h = (int) (mix(x * multipliers[i] + offsets[i]) >>> 33);
+                        if (h < signatures[base + i]) { signatures[base + i] = h; }
+                    }
+                }
+                for (int b = 0; b < numBands; b++) {
+                    bandHashes[u * numBands + b] = bandHash(u, b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the pairs of nodes that first share a band in band b and are similar enough.
+     */
+    private class PairsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int b;
+        private final double threshold;
+        private final boolean exact;
+        private final List<int[]> pairs;
+
+        PairsTask(int b, double threshold, boolean exact, List<int[]> pairs) {
+            this.b = b;
+            this.threshold = threshold;
+            this.exact = exact;
+            this.pairs = pairs;
+        }
+
+        @Override
+        protected void compute() {
+            long[] band = bands[b];
+            for (int start = 0; start < band.length; ) {
+                int end = start + 1;
+                while (end < band.length && (band[end] & ~idMask) == (band[start] & ~idMask)) {
+                    end++;
+                }
+                for (int i = start; i < end; i++) {
+                    int u = (int) (band[i] & idMask);
+                    for (int j = i + 1; j < end; j++) {
+                        int v = (int) (band[j] & idMask);
+                        if (shareEarlierBand(u, v, b)) { continue; }
+                        double s = exact ? similarity(u, v) : estimatedSimilarity(u, v);
+                        if (s >= threshold) { pairs.add(new int[] {u, v}); }
+                    }
+                }
+                start = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package graph;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes PageRank and personalized PageRank in a {@link CompactGraph}. A random surfer
+ * follows a random edge of the current node with probability {@code damping}, and otherwise
+ * jumps to a node drawn from the teleport distribution: uniform for PageRank, and the seed
+ * node for personalized PageRank. A node with no edges always jumps.
+ * <p>
+ * {@link #powerIteration} computes the whole vector by repeated sweeps over the CSR arrays.
+ * Each sweep pulls, for every node v, the rank of each neighbor u divided by the degree of u
+ * (precomputed once per sweep), so every node is written by exactly one task and the sweeps
+ * run in parallel with no synchronization. {@link #push} approximates personalized PageRank
+ * locally, touching only the nodes near the seed.
+ * @author roger
+ *
+ */
+class PageRank {
+
+    private static final int LEAF_SIZE = 1024;
+    private static final int MAX_SWEEPS = 1000;
+
+    private PageRank() {}
+
+    /**
+     * Computes PageRank by power iteration, in parallel on the common {@link ForkJoinPool}.
+     * @param g The graph.
+     * @param seed The id of the node that the surfer jumps to, or -1 to jump to a uniformly
+     * random node.
+     * @param damping The probability of following an edge, in [0, 1).
+     * @param tolerance The sweeps stop when the L1 distance between two successive vectors is
+     * less than this.
+     * @return The rank of every node, indexed by node id, which add up to 1.
+     */
+    static double[] powerIteration(CompactGraph<?> g, int seed, double damping,
+            double tolerance) {
+        checkDamping(damping);
+        int n = g.numNodes();
+        double[] rank = new double[n];
+        if (n == 0) { return rank; }
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        if (seed < 0) {
+            Arrays.fill(rank, 1.0 / n);
+        } else {
+            rank[seed] = 1;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            // the rank of the nodes without edges, and the part of the rest that jumps
+            double teleported = 1 - damping;
+            for (int u = 0; u < n; u++) {
+                int degree = g.degree(u);
+                if (degree == 0) {
+                    teleported += damping * rank[u];
+                    contribution[u] = 0;
+                } else {
+                    contribution[u] = damping * rank[u] / degree;
+                }
+            }
+            double diff = ForkJoinPool.commonPool().invoke(new Sweep(g, seed, teleported,
+                    contribution, rank, next, 0, n));
+            double[] tmp = rank;
+            rank = next;
+            next = tmp;
+            if (diff < tolerance) { break; }
+        }
+        return rank;
+    }
+
+    /**
+     * Approximates personalized PageRank with the forward push of Andersen, Chung and Lang
+     * (https://doi.org/10.1109/FOCS.2006.44). Every node u has an estimate p(u) and a residual
+     * r(u), the probability mass that still has to be spread from u; at first all of the mass
+     * is on the seed. While some node u has {@code r(u) >= epsilon * degree(u)}, the part of
+     * r(u) that jumps is added to p(u) and the rest is split between the neighbors of u. Every
+     * push moves at least {@code (1 - damping) * epsilon} of mass into the estimates, so there
+     * are at most {@code 1 / ((1 - damping) * epsilon)} pushes whatever the size of the graph,
+     * and the estimate of every node u is less than the exact value by at most
+     * {@code epsilon * degree(u)}.
+     * @param g The graph.
+     * @param seed The id of the seed.
+     * @param damping The probability of following an edge, in [0, 1).
+     * @param epsilon The maximum residual per edge.
+     * @param estimates An array of length {@code g.numNodes()} of zeros, which is filled with
+     * the estimates.
+     * @param touched An array of length {@code g.numNodes()}, which is filled with the ids of
+     * the nodes with a nonzero estimate or residual.
+     * @return The number of touched nodes.
+     */
+    static int push(CompactGraph<?> g, int seed, double damping, double epsilon,
+            double[] estimates, int[] touched) {
+        checkDamping(damping);
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("epsilon must be positive: " + epsilon);
+        }
+        int n = g.numNodes();
+        double[] residuals = new double[n];
+        boolean[] queued = new boolean[n];
+        int[] queue = new int[n];
+
+        // queue is circular, since each node is in it at most once at a time
+        int head = 0;
+        int size = 1;
+        queue[0] = seed;
+        queued[seed] = true;
+        residuals[seed] = 1;
+        touched[0] = seed;
+        int numTouched = 1;
+        while (size > 0) {
+            int u = queue[head];
+            head = (head + 1) % n;
+            size--;
+            queued[u] = false;
+            double r = residuals[u];
+            residuals[u] = 0;
+            estimates[u] += (1 - damping) * r;
+            int degree = g.degree(u);
+
+            // a node without edges jumps back to the seed
+            int from = degree == 0 ? 0 : g.offsets[u];
+            int to = degree == 0 ? 1 : g.offsets[u + 1];
+            double share = damping * r / Math.max(1, degree);
+            for (int i = from; i < to; i++) {
+                int v = degree == 0 ? seed : g.targets[i];
+                if (residuals[v] == 0 && estimates[v] == 0) { touched[numTouched++] = v; }
+                residuals[v] += share;
+                if (!queued[v] && residuals[v] >= epsilon * Math.max(1, g.degree(v))) {
+                    queued[v] = true;
+                    queue[(head + size) % n] = v;
+                    size++;
+                }
+            }
+        }
+        return numTouched;
+    }
+
+    private static void checkDamping(double damping) {
+        if (damping < 0 || damping >= 1) {
+            throw new IllegalArgumentException("damping must be in [0, 1): " + damping);
+        }
+    }
+
+    /**
+     * Computes the next rank of the nodes in {@code [from, to)}, splitting the range in half
+     * until it is small, and returns the L1 distance from their current rank.
+     */
+    private static class Sweep extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final CompactGraph<?> g;
+        private final int seed;
+        private final double teleported;
+        private final double[] contribution;
+        private final double[] rank;
+        private final double[] next;
+        private final int from;
+        private final int to;
+
+        Sweep(CompactGraph<?> g, int seed, double teleported, double[] contribution,
+                double[] rank, double[] next, int from, int to) {
+            this.g = g;
+            this.seed = seed;
+            this.teleported = teleported;
+            this.contribution = contribution;
+            this.rank = rank;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                Sweep left = new Sweep(g, seed, teleported, contribution, rank, next, from, mid);
+                left.fork();
+                double right = new Sweep(g, seed, teleported, contribution, rank, next, mid, to)
+                        .compute();
+                return left.join() + right;
+            }
+            double uniform = teleported / g.numNodes();
+            double diff = 0;
+            for (int v = from; v < to; v++) {
+                double sum = seed < 0 ? uniform : (v == seed ? teleported : 0);
+                for (int i = g.offsets[v]; i < g.offsets[v + 1]; i++) {
+                    sum += contribution[g.targets[i]];
+                }
+                next[v] = sum;
+                diff += Math.abs(sum - rank[v]);
+            }
+            return diff;
+        }
+    }
+}
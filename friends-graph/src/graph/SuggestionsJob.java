@@ -0,0 +1,139 @@
+package graph;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Computes friend suggestions for many users at once and writes them to a file. The scores of
+ * the suggestions for a user u are row u of the sparse matrix product A x A (with the
+ * weighting of {@link Graphs.SuggestionScore}), where A is the adjacency matrix of the graph.
+ * Each row is computed on its own with a sparse accumulator (see {@link TwoHopCounter}), so
+ * the product is never stored. The users are processed in blocks: the rows of a block are
+ * split between one worker per thread, each with its own accumulator, and only the top k
+ * suggestions of each row are kept until the block is written. The memory used is
+ * O(threads * n + blockSize * k), however many users there are.
+ * <p>
+ * The file has one line per user, with the key of the user followed by the keys of its
+ * suggestions in descending order of score, separated by tabs.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class SuggestionsJob<V> {
+
+    private final CompactGraph<V> g;
+    private final int k;
+    private final int blockSize;
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * Creates a job that finds the top k suggestions of each user.
+     * @param g The graph.
+     * @param k The maximum number of suggestions per user.
+     * @param score How to score a suggestion.
+     * @param blockSize The number of users whose suggestions are held in memory at once.
+     */
+    public SuggestionsJob(CompactGraph<V> g, int k, Graphs.SuggestionScore score,
+            int blockSize) {
+        this.g = g;
+        this.k = Math.min(k, g.numNodes());
+        this.blockSize = Math.max(1, blockSize);
+        int numWorkers = Math.min(this.blockSize, ForkJoinPool.getCommonPoolParallelism());
+        for (int i = 0; i < numWorkers; i++) {
+            workers.add(new Worker(new TwoHopCounter(g, score), this.k));
+        }
+    }
+
+    /**
+     * Writes the suggestions of every user to a file, replacing the file if it exists.
+     * @param users The nodes to find suggestions for, e.g. the complete-info nodes from
+     * {@code Main.loadIntoGraph}.
+     * @param filepath The path of the file to write.
+     * @param keyFunction A function that returns a String that uniquely identifies a node and
+     * contains no tabs or line breaks, e.g. {@code Person::getUniqueKey}.
+     * @throws IOException
+     */
+    public void run(Collection<V> users, String filepath, Function<V, String> keyFunction)
+            throws IOException {
+        int[] ids = new int[users.size()];
+        int index = 0;
+        for (V u : users) {
+            ids[index++] = g.id(u);
+        }
+        int[][] suggestions = new int[blockSize][k];
+        int[] sizes = new int[blockSize];
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filepath),
+                StandardCharsets.UTF_8)) {
+            for (int from = 0; from < ids.length; from += blockSize) {
+                int to = Math.min(ids.length, from + blockSize);
+                int chunk = (to - from + workers.size() - 1) / workers.size();
+                for (int w = 0; w < workers.size(); w++) {
+                    Worker worker = workers.get(w);
+                    worker.reinitialize();
+                    worker.set(ids, from, Math.min(to, from + w * chunk),
+                            Math.min(to, from + (w + 1) * chunk), suggestions, sizes);
+                }
+                ForkJoinTask.invokeAll(workers);
+
+                for (int i = from; i < to; i++) {
+                    int[] row = suggestions[i - from];
+                    StringBuilder line = new StringBuilder(keyFunction.apply(g.node(ids[i])));
+                    for (int j = 0; j < sizes[i - from]; j++) {
+                        line.append('\t').append(keyFunction.apply(g.node(row[j])));
+                    }
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the suggestions of the users {@code ids[from..to)} with its own accumulator, and
+     * stores them in the rows {@code from - blockStart, ...} of the block.
+     */
+    private static class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TwoHopCounter counter;
+        private final int k;
+        private int[] ids;
+        private int blockStart;
+        private int from;
+        private int to;
+        private int[][] suggestions;
+        private int[] sizes;
+
+        Worker(TwoHopCounter counter, int k) {
+            this.counter = counter;
+            this.k = k;
+        }
+
+        void set(int[] ids, int blockStart, int from, int to, int[][] suggestions,
+                int[] sizes) {
+            this.ids = ids;
+            this.blockStart = blockStart;
+            this.from = from;
+            this.to = to;
+            this.suggestions = suggestions;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                sizes[i - blockStart] = counter.topK(ids[i], k, 1, suggestions[i - blockStart],
+                        null);
+            }
+        }
+    }
+}
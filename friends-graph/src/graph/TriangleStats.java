@@ -0,0 +1,239 @@
+package graph;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The triangles of a {@link CompactGraph}: the number of triangles through every node, the
+ * support of every edge (the number of triangles that contain it, i.e. the number of mutual
+ * friends of its endpoints), local clustering coefficients and the global transitivity.
+ * <p>
+ * Everything is found in one pass of the compact-forward algorithm (Latapy,
+ * https://doi.org/10.1016/j.tcs.2008.07.017): the nodes are ranked by degree, each edge is
+ * oriented from its lower ranked endpoint to the higher ranked one, and every triangle is then
+ * found exactly once, at its lowest ranked node u, by merging the sorted out-lists of u and of
+ * each out-neighbor v. Orienting by degree keeps every out-list short (at most sqrt(2m)), so
+ * the total work is O(m^1.5). The nodes are split between ForkJoin tasks, which add their
+ * triangles to shared atomic counters.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class TriangleStats<V> {
+
+    private static final int LEAF_SIZE = 256;
+
+    private final CompactGraph<V> g;
+    private final long[] nodeTriangles;
+    private final long numTriangles;
+
+    // support[i] is the support of the edge in slot i of g.targets (in both directions)
+    final int[] support;
+
+    /**
+     * Counts the triangles of the given graph, in parallel on the common
+     * {@link ForkJoinPool}.
+     * @param g The graph.
+     */
+    public TriangleStats(CompactGraph<V> g) {
+        this.g = g;
+        int n = g.numNodes();
+
+        // rank[u] orders the nodes by degree, breaking ties by id
+        Integer[] byDegree = new Integer[n];
+        for (int u = 0; u < n; u++) {
+            byDegree[u] = u;
+        }
+        Arrays.sort(byDegree, (a, b) -> g.degree(a) != g.degree(b)
+                ? g.degree(a) - g.degree(b) : a - b);
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[byDegree[i]] = i;
+        }
+
+        // the out-lists in CSR form, still sorted by id, with the slot of each edge in g
+        int[] outOffsets = new int[n + 1];
+        int[] outTargets = new int[g.numEdges()];
+        int[] outSlots = new int[g.numEdges()];
+        for (int u = 0; u < n; u++) {
+            int k = outOffsets[u];
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                if (rank[g.targets[i]] > rank[u]) {
+                    outTargets[k] = g.targets[i];
+                    outSlots[k] = i;
+                    k++;
+                }
+            }
+            outOffsets[u + 1] = k;
+        }
+
+        AtomicLongArray triangles = new AtomicLongArray(n);
+        AtomicIntegerArray edgeSupport = new AtomicIntegerArray(g.targets.length);
+        ForkJoinPool.commonPool().invoke(new CountTask(outOffsets, outTargets, outSlots,
+                triangles, edgeSupport, 0, n));
+
+        this.nodeTriangles = new long[n];
+        long total = 0;
+        for (int u = 0; u < n; u++) {
+            nodeTriangles[u] = triangles.get(u);
+            total += nodeTriangles[u];
+        }
+        this.numTriangles = total / 3;
+        int[] reverse = UnitCapacityFlow.reverseSlots(g);
+        this.support = new int[g.targets.length];
+        for (int s : outSlots) {
+            support[s] = edgeSupport.get(s);
+            support[reverse[s]] = support[s];
+        }
+    }
+
+    /**
+     * Returns the number of triangles in the graph.
+     * @return The number of triangles in the graph.
+     */
+    public long numTriangles() {
+        return numTriangles;
+    }
+
+    /**
+     * Returns the number of triangles that contain the specified node.
+     * @param v A node in the graph.
+     * @return The number of triangles that contain v.
+     */
+    public long triangles(V v) {
+        return nodeTriangles[g.id(v)];
+    }
+
+    /**
+     * Returns the support of the edge {u, v}: the number of triangles that contain it, which is
+     * the number of mutual friends of u and v.
+     * @param u A node in the graph.
+     * @param v A neighbor of u.
+     * @return The support of the edge {u, v}.
+     * @throws IllegalArgumentException if u and v are not neighbors.
+     */
+    public int support(V u, V v) {
+        int a = g.id(u);
+        int slot = Arrays.binarySearch(g.targets, g.offsets[a], g.offsets[a + 1], g.id(v));
+        if (slot < 0) {
+            throw new IllegalArgumentException("Not an edge: " + u + ", " + v);
+        }
+        return support[slot];
+    }
+
+    /**
+     * Returns the local clustering coefficient of the specified node: the fraction of pairs of
+     * its neighbors that are neighbors of each other.
+     * @param v A node in the graph.
+     * @return The local clustering coefficient of v, or 0 if v has fewer than 2 neighbors.
+     */
+    public double clusteringCoefficient(V v) {
+        return clusteringCoefficient(g.id(v));
+    }
+
+    private double clusteringCoefficient(int u) {
+        long d = g.degree(u);
+        return d < 2 ? 0 : 2.0 * nodeTriangles[u] / (d * (d - 1));
+    }
+
+    /**
+     * Returns the average of the local clustering coefficients of all nodes.
+     * @return The average local clustering coefficient, or 0 if the graph has no nodes.
+     */
+    public double averageClusteringCoefficient() {
+        int n = g.numNodes();
+        double sum = 0;
+        for (int u = 0; u < n; u++) {
+            sum += clusteringCoefficient(u);
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+
+    /**
+     * Returns the transitivity of the graph: the fraction of paths of length 2 whose endpoints
+     * are neighbors, i.e. 3 times the number of triangles divided by the number of paths of
+     * length 2.
+     * @return The transitivity of the graph, or 0 if it has no paths of length 2.
+     */
+    public double transitivity() {
+        long paths = 0;
+        for (int u = 0; u < g.numNodes(); u++) {
+            long d = g.degree(u);
+            paths += d * (d - 1) / 2;
+        }
+        return paths == 0 ? 0 : 3.0 * numTriangles / paths;
+    }
+
+    /**
+     * Finds the triangles whose lowest ranked node is in {@code [from, to)}, splitting the range
+     * in half until it is small.
+     */
+    private static class CountTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] outOffsets;
+        private final int[] outTargets;
+        private final int[] outSlots;
+        private final AtomicLongArray triangles;
+        private final AtomicIntegerArray support;
+        private final int from;
+        private final int to;
+
+        CountTask(int[] outOffsets, int[] outTargets, int[] outSlots,
+                AtomicLongArray triangles, AtomicIntegerArray support, int from, int to) {
+            this.outOffsets = outOffsets;
+            this.outTargets = outTargets;
+            this.outSlots = outSlots;
+            this.triangles = triangles;
+            this.support = support;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CountTask(outOffsets, outTargets, outSlots, triangles, support,
+                        from, mid),
+                        new CountTask(outOffsets, outTargets, outSlots, triangles, support,
+                        mid, to));
+                return;
+            }
+            for (int u = from; u < to; u++) {
+                long uTriangles = 0;
+                for (int i = outOffsets[u]; i < outOffsets[u + 1]; i++) {
+                    int v = outTargets[i];
+
+                    // merge the out-lists of u and v; each common node w closes a triangle
+                    int p = outOffsets[u];
+                    int q = outOffsets[v];
+                    int vTriangles = 0;
+                    while (p < outOffsets[u + 1] && q < outOffsets[v + 1]) {
+                        if (outTargets[p] < outTargets[q]) {
+                            p++;
+                        } else if (outTargets[p] > outTargets[q]) {
+                            q++;
+                        } else {
+                            int w = outTargets[p];
+                            triangles.incrementAndGet(w);
+                            support.incrementAndGet(outSlots[p]);
+                            support.incrementAndGet(outSlots[q]);
+                            vTriangles++;
+                            p++;
+                            q++;
+                        }
+                    }
+                    if (vTriangles > 0) {
+                        triangles.addAndGet(v, vTriangles);
+                        support.addAndGet(outSlots[i], vTriangles);
+                        uTriangles += vTriangles;
+                    }
+                }
+                if (uTriangles > 0) { triangles.addAndGet(u, uTriangles); }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package graph;
+import java.util.Arrays;
+
+/**
+ * The truss decomposition of a {@link CompactGraph}. The k-truss of a graph is the largest
+ * subgraph in which every edge is in at least k - 2 triangles (every pair of friends has at
+ * least k - 2 mutual friends inside the subgraph), and the trussness of an edge is the largest
+ * k such that the edge is in the k-truss. Every k-clique is inside the k-truss, but unlike
+ * cliques, trusses are not broken apart by a few missing edges, so they are a cheap way to
+ * find tightly knit friend groups.
+ * <p>
+ * The support of every edge is first counted in parallel with {@link TriangleStats}. The
+ * edges are then peeled in increasing order of support, with the same bucket structure as
+ * {@link Graphs#coreDecomposition}: removing an edge {u, v} of support k lowers the support
+ * of the edges {u, w} and {v, w} of every remaining triangle {u, v, w} that have support
+ * greater than k, moving each down one bucket in O(1). The triangles of {u, v} are found by
+ * looking up the neighbors of the endpoint of smaller degree in the adjacency list of the
+ * other, so peeling takes O(m^1.5 log n) time in the worst case and much less on social
+ * networks.
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class TrussDecomposition<V> {
+
+    private final CompactGraph<V> g;
+
+    // trussness[i] is the trussness of the edge in slot i of g.targets (in both directions)
+    private final int[] trussness;
+    private final int maxTrussness;
+
+    /**
+     * Computes the trussness of every edge in the given graph.
+     * @param g The graph.
+     */
+    public TrussDecomposition(CompactGraph<V> g) {
+        this(g, new TriangleStats<>(g));
+    }
+
+    /**
+     * Computes the trussness of every edge in the given graph, starting from supports that
+     * were already counted.
+     * @param g The graph.
+     * @param triangles The triangles of g.
+     */
+    public TrussDecomposition(CompactGraph<V> g, TriangleStats<V> triangles) {
+        this.g = g;
+        int n = g.numNodes();
+        int m = g.numEdges();
+
+        // number the edges by their slot in the adjacency list of the smaller endpoint
+        int[] reverse = UnitCapacityFlow.reverseSlots(g);
+        int[] edgeOfSlot = new int[g.targets.length];
+        int[] slotOfEdge = new int[m];
+        int[] source = new int[m];
+        int[] support = new int[m];
+        int e = 0;
+        for (int u = 0; u < n; u++) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                if (g.targets[i] < u) { continue; }
+                edgeOfSlot[i] = e;
+                edgeOfSlot[reverse[i]] = e;
+                slotOfEdge[e] = i;
+                source[e] = u;
+                support[e] = triangles.support[i];
+                e++;
+            }
+        }
+
+        // bucket sort the edges by support; bucketStart[s] is the index in ordering of the
+        // first edge with support s
+        int maxSupport = 0;
+        for (int s : support) {
+            maxSupport = Math.max(maxSupport, s);
+        }
+        int[] bucketStart = new int[maxSupport + 1];
+        for (int s : support) {
+            bucketStart[s]++;
+        }
+        int start = 0;
+        for (int s = 0; s <= maxSupport; s++) {
+            int size = bucketStart[s];
+            bucketStart[s] = start;
+            start += size;
+        }
+        int[] ordering = new int[m];
+        int[] position = new int[m];
+        for (int f = 0; f < m; f++) {
+            position[f] = bucketStart[support[f]]++;
+            ordering[position[f]] = f;
+        }
+        for (int s = maxSupport; s > 0; s--) {
+            bucketStart[s] = bucketStart[s - 1];
+        }
+        bucketStart[0] = 0;
+
+        boolean[] removed = new boolean[m];
+        for (int i = 0; i < m; i++) {
+            int f = ordering[i];
+            int k = support[f];
+            int u = source[f];
+            int v = g.targets[slotOfEdge[f]];
+            if (g.degree(u) > g.degree(v)) {
+                int tmp = u;
+                u = v;
+                v = tmp;
+            }
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                int uw = edgeOfSlot[p];
+                if (removed[uw]) { continue; }
+                int q = Arrays.binarySearch(g.targets, g.offsets[v], g.offsets[v + 1],
+                        g.targets[p]);
+                if (q < 0 || removed[edgeOfSlot[q]]) { continue; }
+                int vw = edgeOfSlot[q];
+                if (support[uw] > k) { decrement(uw, support, bucketStart, ordering, position); }
+                if (support[vw] > k) { decrement(vw, support, bucketStart, ordering, position); }
+            }
+            removed[f] = true;
+        }
+
+        this.trussness = new int[g.targets.length];
+        int max = 0;
+        for (int f = 0; f < m; f++) {
+            int t = support[f] + 2;
+            trussness[slotOfEdge[f]] = t;
+            trussness[reverse[slotOfEdge[f]]] = t;
+            max = Math.max(max, t);
+        }
+        this.maxTrussness = max;
+    }
+
+    /**
+     * Moves edge f down one bucket: swaps f with the first edge in its bucket, then moves the
+     * bucket boundary past it.
+     */
+    private static void decrement(int f, int[] support, int[] bucketStart, int[] ordering,
+            int[] position) {
+        int s = support[f];
+        int pf = position[f];
+        int ph = bucketStart[s];
+        int h = ordering[ph];
+        if (f != h) {
+            position[f] = ph;
+            ordering[pf] = h;
+            position[h] = pf;
+            ordering[ph] = f;
+        }
+        bucketStart[s]++;
+        support[f]--;
+    }
+
+    /**
+     * Returns the trussness of the edge {u, v}: the largest k such that the edge is in the
+     * k-truss of the graph.
+     * @param u A node in the graph.
+     * @param v A neighbor of u.
+     * @return The trussness of the edge {u, v}, which is at least 2.
+     * @throws IllegalArgumentException if u and v are not neighbors.
+     */
+    public int trussness(V u, V v) {
+        int a = g.id(u);
+        int slot = Arrays.binarySearch(g.targets, g.offsets[a], g.offsets[a + 1], g.id(v));
+        if (slot < 0) {
+            throw new IllegalArgumentException("Not an edge: " + u + ", " + v);
+        }
+        return trussness[slot];
+    }
+
+    /**
+     * Returns the largest trussness of any edge, or 0 if the graph has no edges.
+     * @return The largest k such that the k-truss of the graph is not empty.
+     */
+    public int maxTrussness() {
+        return maxTrussness;
+    }
+
+    /**
+     * Returns the k-truss of the graph: the edges with trussness at least k, and their
+     * endpoints.
+     * @param k The minimum trussness.
+     * @return The k-truss of the graph, which is empty if k is greater than
+     * {@link #maxTrussness()}.
+     */
+    public Graph<V> kTruss(int k) {
+        Graph<V> truss = new Graph<>();
+        for (int u = 0; u < g.numNodes(); u++) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int w = g.targets[i];
+                if (w > u && trussness[i] >= k) {
+                    truss.addEdge(g.node(u), g.node(w));
+                }
+            }
+        }
+        return truss;
+    }
+}
@@ -0,0 +1,146 @@
+package graph;
+
+/**
+ * Counts the 2-hop neighbors of a node in a {@link CompactGraph}, for friend suggestions. One
+ * walk over the neighbors of the neighbors of u adds up, for every node x reached, the number
+ * of common neighbors of u and x and a weighted score, in int and double arrays indexed by
+ * node id. Only the entries that were touched are reset afterwards, so a counter can be reused
+ * for many queries in O(work of the query) time each. A counter is not thread-safe; each thread
+ * needs its own.
+ * @author roger
+ *
+ */
+class TwoHopCounter {
+
+    private final CompactGraph<?> g;
+    private final Graphs.SuggestionScore scoreType;
+
+    private final int[] counts;
+    private final double[] scores;
+    private final int[] touched;
+    private int numTouched = 0;
+
+    // stamp[x] == u + 1 while the query for u runs and x is u or a neighbor of u
+    private final int[] stamp;
+
+    // a min-heap of candidate ids, ordered by score, used to select the top k
+    private final int[] heap;
+
+    TwoHopCounter(CompactGraph<?> g, Graphs.SuggestionScore scoreType) {
+        int n = g.numNodes();
+        this.g = g;
+        this.scoreType = scoreType;
+        this.counts = new int[n];
+        this.scores = new double[n];
+        this.touched = new int[n];
+        this.stamp = new int[n];
+        this.heap = new int[n];
+    }
+
+    /**
+     * Finds the k nodes with the highest scores that are not u and not neighbors of u, but
+     * have at least minMutualFriends common neighbors with u.
+     * @param u The id of a node.
+     * @param k The maximum number of nodes to return.
+     * @param minMutualFriends The minimum number of common neighbors of u and a suggestion.
+     * @param outIds Filled with the ids of the suggestions, in descending order of score. Its
+     * length must be at least {@code min(k, numNodes)}.
+     * @param outScores If not null, filled with the score of each suggestion.
+     * @return The number of suggestions.
+     */
+    int topK(int u, int k, int minMutualFriends, int[] outIds, double[] outScores) {
+        int mark = u + 1;
+        stamp[u] = mark;
+        for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+            stamp[g.targets[i]] = mark;
+        }
+        for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+            int w = g.targets[i];
+            double weight = weight(w);
+            for (int j = g.offsets[w]; j < g.offsets[w + 1]; j++) {
+                int x = g.targets[j];
+                if (stamp[x] == mark) { continue; }
+                if (counts[x] == 0) { touched[numTouched++] = x; }
+                counts[x]++;
+                scores[x] += weight;
+            }
+        }
+
+        int heapSize = 0;
+        for (int t = 0; t < numTouched; t++) {
+            int x = touched[t];
+            if (counts[x] < minMutualFriends) { continue; }
+            if (heapSize < k) {
+                heap[heapSize] = x;
+                siftUp(heapSize++);
+            } else if (heapSize > 0 && better(x, heap[0])) {
+                heap[0] = x;
+                siftDown(0, heapSize);
+            }
+        }
+        int size = heapSize;
+        while (heapSize > 0) {
+            int x = heap[0];
+            outIds[heapSize - 1] = x;
+            if (outScores != null) { outScores[heapSize - 1] = scores[x]; }
+            heap[0] = heap[--heapSize];
+            siftDown(0, heapSize);
+        }
+
+        for (int t = 0; t < numTouched; t++) {
+            counts[touched[t]] = 0;
+            scores[touched[t]] = 0;
+        }
+        numTouched = 0;
+        stamp[u] = 0;
+        for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+            stamp[g.targets[i]] = 0;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the amount that a common neighbor w adds to the score of a suggestion.
+     */
+    private double weight(int w) {
+        switch (scoreType) {
+        case ADAMIC_ADAR:
+            return 1 / Math.log(g.degree(w));
+        case RESOURCE_ALLOCATION:
+            return 1.0 / g.degree(w);
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * Returns true if x should be suggested before y: a higher score, then the smaller id.
+     */
+    private boolean better(int x, int y) {
+        return scores[x] > scores[y] || (scores[x] == scores[y] && x < y);
+    }
+
+    private void siftUp(int i) {
+        int x = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], x)) { break; }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private void siftDown(int i, int size) {
+        int x = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) { break; }
+            if (child + 1 < size && better(heap[child], heap[child + 1])) { child++; }
+            if (!better(x, heap[child])) { break; }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+}
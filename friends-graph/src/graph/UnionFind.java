@@ -0,0 +1,271 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A disjoint-set forest, which many threads can use at once, e.g. to find the connected
+ * components of a graph while its edges are still being loaded. Nodes do not have to be known
+ * in advance: {@link #union} adds the nodes it is given if they are new, each in its own set.
+ * <p>
+ * Every node gets an int id when it is added, from a {@link ConcurrentHashMap}, and the parent
+ * of every node is kept in {@link AtomicIntegerArray} chunks indexed by id, which double in
+ * size and are allocated as the ids reach them, so nothing is ever copied. Only adding a new
+ * node takes a lock, on one bin of the map. {@link #find} compresses paths by path halving,
+ * where each step replaces the parent of a node with its grandparent using compareAndSet, so a
+ * step that loses a race changes nothing. Every node has a random priority, a hash of its id
+ * with a random salt, and {@link #union} links the root with the lower priority under the root
+ * with the higher priority, also with compareAndSet, and starts over if that root has been
+ * linked by another thread in the meantime. Links always point toward higher priorities, so no
+ * cycle can form, and since the priorities are a random order that does not depend on the
+ * operations, path halving makes the expected cost of an operation almost constant (Jayanti
+ * and Tarjan, https://arxiv.org/abs/1612.01514).
+ * @author roger
+ *
+ * @param <V> The type class of the nodes.
+ */
+public class UnionFind<V> {
+
+    // chunk c holds the ids in [FIRST_CHUNK * (2^c - 1), FIRST_CHUNK * (2^(c + 1) - 1))
+    private static final int FIRST_CHUNK = 1024;
+    private static final int NUM_CHUNKS = 21;
+
+    private final ConcurrentHashMap<V, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger numNodes = new AtomicInteger();
+    private final AtomicInteger numSets = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicIntegerArray> parents =
+            new AtomicReferenceArray<>(NUM_CHUNKS);
+    private final AtomicReferenceArray<AtomicReferenceArray<V>> nodes =
+            new AtomicReferenceArray<>(NUM_CHUNKS);
+    private final long salt = new Random().nextLong();
+
+    /**
+     * Creates an empty forest. Nodes are added by {@link #add} and {@link #union}.
+     */
+    public UnionFind() {}
+
+    /**
+     * Creates a forest where every given node is in its own set. The nodes get the ids
+     * {@code 0, 1, ...} in the order of the collection.
+     * @param nodes The nodes. More nodes can be added later.
+     * @throws IllegalArgumentException if a node is given twice.
+     */
+    public UnionFind(Collection<V> nodes) {
+        for (V v : nodes) {
+            if (!add(v)) {
+                throw new IllegalArgumentException("Duplicate node: " + v);
+            }
+        }
+    }
+
+    /**
+     * Adds v in its own set, if it is not in the forest yet.
+     * @param v A node.
+     * @return true if v was added.
+     */
+    public boolean add(V v) {
+        boolean[] added = new boolean[1];
+        ids.computeIfAbsent(v, key -> {
+            added[0] = true;
+            return newId(key);
+        });
+        return added[0];
+    }
+
+    /**
+     * Returns the representative of the set that contains v. Two nodes are in the same set
+     * exactly when they have the same representative, as long as no union runs at the same
+     * time.
+     * @param v A node in the forest.
+     * @return The representative of the set that contains v.
+     */
+    public V find(V v) {
+        return node(find(id(v)));
+    }
+
+    /**
+     * Merges the sets that contain u and v, first adding u and v if they are not in the
+     * forest yet.
+     * @param u A node.
+     * @param v A node.
+     * @return true if u and v were in different sets.
+     */
+    public boolean union(V u, V v) {
+        return union(idOrAdd(u), idOrAdd(v));
+    }
+
+    /**
+     * Returns true if u and v are in the same set. If other threads are merging sets at the
+     * same time, the answer is correct at some moment during the call.
+     * @param u A node in the forest.
+     * @param v A node in the forest.
+     * @return true if u and v are in the same set.
+     */
+    public boolean connected(V u, V v) {
+        int a = id(u);
+        int b = id(v);
+        while (true) {
+            a = find(a);
+            b = find(b);
+            if (a == b) { return true; }
+            // a is still a root, so the sets really were different at some point
+            if (parent(a) == a) { return false; }
+        }
+    }
+
+    /**
+     * Returns the number of nodes.
+     * @return The number of nodes.
+     */
+    public int numNodes() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the number of sets.
+     * @return The number of sets.
+     */
+    public int numSets() {
+        return numSets.get();
+    }
+
+    /**
+     * Returns the sets, which should not be called while other threads are adding nodes or
+     * merging sets.
+     * @return The sets, in descending order of size.
+     */
+    public List<List<V>> sets() {
+        int n = numNodes.get();
+        List<List<V>> sets = new ArrayList<>();
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            int root = find(i);
+            if (index[root] == 0) {
+                sets.add(new ArrayList<>());
+                index[root] = sets.size();
+            }
+            sets.get(index[root] - 1).add(node(i));
+        }
+        sets.sort((a, b) -> b.size() - a.size());
+        return sets;
+    }
+
+    private int id(V v) {
+        Integer id = ids.get(v);
+        if (id == null) {
+            throw new IllegalArgumentException("Not a node: " + v);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of v, adding v if it is new.
+     */
+    private int idOrAdd(V v) {
+        Integer id = ids.get(v);
+        return id != null ? id : ids.computeIfAbsent(v, this::newId);
+    }
+
+    /**
+     * Gives v the next id, in its own set. This runs inside computeIfAbsent, so the slot of
+     * the id is filled in before the id is published in the map, and every thread that sees
+     * the id also sees the slot.
+     */
+    private int newId(V v) {
+        int x = numNodes.getAndIncrement();
+        int c = chunk(x);
+        if (c >= NUM_CHUNKS) {
+            throw new IllegalStateException("Too many nodes");
+        }
+        if (parents.get(c) == null) {
+            int size = FIRST_CHUNK << c;
+            nodes.compareAndSet(c, null, new AtomicReferenceArray<>(size));
+            parents.compareAndSet(c, null, new AtomicIntegerArray(size));
+        }
+        nodes.get(c).set(offset(x, c), v);
+        parents.get(c).set(offset(x, c), x);
+        numSets.incrementAndGet();
+        return x;
+    }
+
+    private static int chunk(int x) {
+        return 31 - Integer.numberOfLeadingZeros(x / FIRST_CHUNK + 1);
+    }
+
+    private static int offset(int x, int c) {
+        return x - FIRST_CHUNK * ((1 << c) - 1);
+    }
+
+    private V node(int x) {
+        int c = chunk(x);
+        return nodes.get(c).get(offset(x, c));
+    }
+
+    private int parent(int x) {
+        int c = chunk(x);
+        return parents.get(c).get(offset(x, c));
+    }
+
+    private boolean compareAndSetParent(int x, int expected, int p) {
+        int c = chunk(x);
+        return parents.get(c).compareAndSet(offset(x, c), expected, p);
+    }
+
+    /**
+     * Returns true if node id a has a lower priority than node id b.
+     */
+    private boolean lowerPriority(int a, int b) {
+        long pa = mix(a ^ salt);
+        long pb = mix(b ^ salt);
+        return pa != pb ? pa < pb : a < b;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads every bit of x over the result.
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * Returns the root of the tree that contains node id x, halving the path on the way.
+     */
+    int find(int x) {
+        while (true) {
+            int p = parent(x);
+            if (p == x) { return x; }
+            int grandparent = parent(p);
+            if (grandparent == p) { return p; }
+            compareAndSetParent(x, p, grandparent);
+            x = grandparent;
+        }
+    }
+
+    /**
+     * Merges the sets that contain node ids a and b.
+     * @return true if they were in different sets.
+     */
+    boolean union(int a, int b) {
+        while (true) {
+            a = find(a);
+            b = find(b);
+            if (a == b) { return false; }
+            int low = lowerPriority(a, b) ? a : b;
+            int high = low == a ? b : a;
+            if (compareAndSetParent(low, low, high)) {
+                numSets.decrementAndGet();
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package graph;
+import java.util.Arrays;
+
+/**
+ * Dinic's algorithm specialized for a {@link CompactGraph} in which every edge is undirected
+ * and has capacity 1. The residual network is the CSR adjacency of the graph itself: slot i
+ * of {@code g.targets} is the edge from its owner u to {@code g.targets[i]}, and
+ * {@code reverse[i]} is the slot of the same edge in the other direction. The flow on each
+ * slot is -1, 0 or 1, so the residual capacity of a slot is {@code 1 - flow[i]}. The reverse
+ * slots only depend on the graph and can be shared, but the flow arrays are owned by one
+ * instance, so each thread needs its own {@code UnitCapacityFlow}.
+ * @author roger
+ *
+ */
+class UnitCapacityFlow {
+
+    private final CompactGraph<?> g;
+    private final int[] reverse;
+
+    private final byte[] flow;
+    private final int[] level;
+    private final int[] current;
+    private final int[] queue;
+    private final int[] path;
+
+    /**
+     * Creates a flow solver on the given graph.
+     * @param g The graph.
+     * @param reverse The reverse slot of every slot, from {@link #reverseSlots}.
+     */
+    UnitCapacityFlow(CompactGraph<?> g, int[] reverse) {
+        int n = g.numNodes();
+        this.g = g;
+        this.reverse = reverse;
+        this.flow = new byte[g.targets.length];
+        this.level = new int[n];
+        this.current = new int[n];
+        this.queue = new int[n];
+        this.path = new int[n];
+    }
+
+    /**
+     * Returns, for every slot i of {@code g.targets} with owner u, the slot of u in the
+     * adjacency list of {@code g.targets[i]}.
+     * @param g The graph.
+     * @return The reverse slot of every slot.
+     */
+    static int[] reverseSlots(CompactGraph<?> g) {
+        int[] reverse = new int[g.targets.length];
+        for (int u = 0; u < g.numNodes(); u++) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int v = g.targets[i];
+                if (u < v) {
+                    int j = Arrays.binarySearch(g.targets, g.offsets[v], g.offsets[v + 1], u);
+                    reverse[i] = j;
+                    reverse[j] = i;
+                }
+            }
+        }
+        return reverse;
+    }
+
+    /**
+     * Finds a minimum s-t cut. The search stops as soon as the flow reaches the smaller of
+     * the degrees of s and t, since no cut can be smaller than that.
+     * @param s The source.
+     * @param t The sink, distinct from s.
+     * @param sourceSide An array of length {@code g.numNodes()} that is filled with true for
+     * the nodes on the source side of the cut and false for the rest.
+     * @return The value of the minimum cut, i.e. the number of edge-disjoint paths from s to t.
+     */
+    int minCut(int s, int t, boolean[] sourceSide) {
+        Arrays.fill(flow, (byte) 0);
+        int bound = Math.min(g.degree(s), g.degree(t));
+        int total = 0;
+        while (total < bound && computeLevels(s, t)) {
+            for (int u = 0; u < level.length; u++) {
+                current[u] = g.offsets[u];
+            }
+            total += blockingFlow(s, t, bound - total);
+        }
+
+        // when the cut is all of the edges of s or of t, its sides are known without a search
+        if (total == g.degree(s)) {
+            Arrays.fill(sourceSide, false);
+            sourceSide[s] = true;
+            return total;
+        }
+        if (total == g.degree(t)) {
+            Arrays.fill(sourceSide, true);
+            sourceSide[t] = false;
+            return total;
+        }
+
+        // the nodes reachable from s in the residual network
+        Arrays.fill(sourceSide, false);
+        int head = 0;
+        int tail = 0;
+        sourceSide[s] = true;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int v = g.targets[i];
+                if (!sourceSide[v] && flow[i] < 1) {
+                    sourceSide[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Computes the BFS level of every node in the residual network.
+     * @return true if t is reachable from s.
+     */
+    private boolean computeLevels(int s, int t) {
+        Arrays.fill(level, -1);
+        int head = 0;
+        int tail = 0;
+        level[s] = 0;
+        queue[tail++] = s;
+        while (head < tail && level[t] < 0) {
+            int u = queue[head++];
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; i++) {
+                int v = g.targets[i];
+                if (level[v] < 0 && flow[i] < 1) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[t] >= 0;
+    }
+
+    /**
+     * Finds a blocking flow in the level graph with an iterative depth-first search. Every
+     * augmenting path carries exactly one unit, so the path is abandoned back to s after each
+     * augmentation and the current slot of each node only moves forward.
+     * @param limit The largest amount of flow to push.
+     * @return The amount of flow that was pushed.
+     */
+    private int blockingFlow(int s, int t, int limit) {
+        int pushed = 0;
+        int depth = 0;
+        int u = s;
+        while (pushed < limit) {
+            if (u == t) {
+                for (int k = 0; k < depth; k++) {
+                    flow[path[k]]++;
+                    flow[reverse[path[k]]]--;
+                }
+                pushed++;
+                depth = 0;
+                u = s;
+                continue;
+            }
+            int i = current[u];
+            int end = g.offsets[u + 1];
+            while (i < end && (flow[i] == 1 || level[g.targets[i]] != level[u] + 1)) {
+                i++;
+            }
+            current[u] = i;
+            if (i < end) {
+                path[depth++] = i;
+                u = g.targets[i];
+                continue;
+            }
+
+            // u has no way to t, so remove it from the level graph and back up
+            level[u] = -1;
+            if (depth == 0) { break; }
+            depth--;
+            u = g.targets[reverse[path[depth]]];
+            current[u]++;
+        }
+        return pushed;
+    }
+}